@@ -0,0 +1,71 @@
+package com.tomash.androidcontacts.tests
+
+import com.tomash.androidcontacts.BaseTest
+import com.tomash.androidcontacts.contactgetter.main.contactsSaver.ContactsBulkSaver
+import com.tomash.androidcontacts.utils.ACResultTestRule
+import com.tomash.androidcontacts.utils.context
+import com.tomash.androidcontacts.utils.createRandomContactData
+import com.tomash.androidcontacts.utils.getAllContacts
+import com.tomash.androidcontacts.utils.mockContactDataList
+import com.tomash.androidcontacts.utils.wrap
+import org.junit.Assert
+import org.junit.Rule
+import org.junit.Test
+
+class BulkSaveTests : BaseTest() {
+
+    @get:Rule
+    var callbackRule = ACResultTestRule()
+
+    @Test
+    fun savesAllContacts() {
+        val contacts = mockContactDataList(500)
+        val savedIds = mutableMapOf<Int, Int>()
+        ContactsBulkSaver(context).saveContacts(contacts, wrap(
+            callbackRule.shouldComplete(),
+            { onResult { savedIds.putAll(it) } }
+        ))
+        Assert.assertEquals(contacts.indices.toSet(), savedIds.keys)
+        Assert.assertEquals(contacts.size, getAllContacts().size)
+    }
+
+    @Test
+    fun failingContactIsIsolated() {
+        val contacts = mockContactDataList(40).toMutableList()
+        // provider rejects raw contact with account type but without account name
+        val broken = createRandomContactData().apply {
+            accountName.clear()
+            accountType.clear()
+            setAccountType("broken.account.type")
+        }
+        contacts.add(17, broken)
+        var failed: Map<Int, Exception> = emptyMap()
+        ContactsBulkSaver(context).saveContacts(contacts, wrap(
+            callbackRule.shouldFail(),
+            { onFailure { failed = it } }
+        ))
+        Assert.assertEquals(setOf(17), failed.keys)
+        Assert.assertEquals(contacts.size - 1, getAllContacts().size)
+    }
+
+    @Test
+    fun duplicatedContactsGetSeparateResults() {
+        val contact = createRandomContactData()
+        val contacts = listOf(contact, contact, contact)
+        val savedIds = mutableMapOf<Int, Int>()
+        ContactsBulkSaver(context).saveContacts(contacts, wrap(
+            callbackRule.shouldComplete(),
+            { onResult { savedIds.putAll(it) } }
+        ))
+        Assert.assertEquals(setOf(0, 1, 2), savedIds.keys)
+        Assert.assertEquals(3, savedIds.values.toSet().size)
+    }
+
+    @Test
+    fun finishesWithCompleteOnEmptyList() {
+        ContactsBulkSaver(context).saveContacts(listOf(), wrap(
+            callbackRule.shouldHaveNoResults(),
+            callbackRule.shouldComplete()
+        ))
+    }
+}
@@ -3,6 +3,9 @@ package com.tomash.androidcontacts.tests
 import com.tomash.androidcontacts.BaseTest
 import com.tomash.androidcontacts.contactgetter.entity.ContactData
 import com.tomash.androidcontacts.contactgetter.entity.PhoneNumber
+import com.tomash.androidcontacts.contactgetter.main.ContactColumn
+import com.tomash.androidcontacts.contactgetter.main.FieldType
+import com.tomash.androidcontacts.contactgetter.main.NameColumn
 import com.tomash.androidcontacts.contactgetter.main.Sorting
 import com.tomash.androidcontacts.contactgetter.main.contactsGetter.ContactsGetterBuilder
 import com.tomash.androidcontacts.contactgetter.main.contactsSaver.ContactsSaverBuilder
@@ -124,6 +127,17 @@ class GetContactsTests : BaseTest() {
         Assert.assertEquals(3, savedList.size)
     }
 
+    @Test
+    fun withFormattedPhoneLikeMatchesUnformattedNumber() {
+        createRandomList {
+            it.forEach { it.phoneList.clear() }
+            it[0].phoneList.add(PhoneNumber("5551234", "1234"))
+            it[1].phoneList.add(PhoneNumber("5561234", "1234"))
+        }
+        val savedList = getList { withPhoneLike("555 12") }
+        Assert.assertEquals(1, savedList.size)
+    }
+
     @Test
     fun withPhoneFiltersPhones() {
         //create list with 50 contacts and save them
@@ -171,6 +185,65 @@ class GetContactsTests : BaseTest() {
         }
     }
 
+    @Test
+    fun pagesContainWholeSortedList() {
+        createRandomList {}
+        Sorting.values().forEach { sorting ->
+            val builder = ContactsGetterBuilder(context).setSortOrder(sorting)
+            val paged = mutableListOf<ContactData>()
+            var page = builder.buildPage(null, 7)
+            paged.addAll(page.contacts)
+            while (page.hasNextPage()) {
+                page = builder.buildPage(page.nextPageKey, 7)
+                paged.addAll(page.contacts)
+            }
+            Assert.assertEquals(getList { setSortOrder(sorting) }.map { it.contactId }, paged.map { it.contactId })
+        }
+    }
+
+    @Test
+    fun deltaContainsOnlyChangedContacts() {
+        createRandomList {}
+        val watermark = ContactsGetterBuilder(context).buildDelta(0).watermark
+        val changed = createRandomContact {}
+        val delta = ContactsGetterBuilder(context).allFields().buildDelta(watermark)
+        Assert.assertEquals(1, delta.changedContacts.size)
+        Assert.assertEquals(changed.compositeName, delta.changedContacts.first().compositeName)
+        Assert.assertTrue(delta.deletedContactIds.isEmpty())
+        Assert.assertTrue(delta.watermark > watermark)
+        Assert.assertTrue(ContactsGetterBuilder(context).buildDelta(delta.watermark).isEmpty)
+    }
+
+    @Test
+    fun contactsAreFoundByIdsAndLookupKeys() {
+        createRandomList {}
+        val all = ContactsGetterBuilder(context).allFields().buildList()
+        val requested = all.take(10)
+        val byIds = ContactsGetterBuilder(context).allFields().getByIds(requested.map { it.contactId } + -1)
+        Assert.assertEquals(requested.size, byIds.size)
+        requested.forEach { Assert.assertEquals(it, byIds[it.contactId]) }
+        val byKeys = ContactsGetterBuilder(context).allFields().getByLookupKeys(requested.map { it.lookupKey })
+        Assert.assertEquals(requested.size, byKeys.size)
+        requested.forEach { Assert.assertEquals(it, byKeys[it.lookupKey]) }
+        Assert.assertEquals(requested.first(), ContactsGetterBuilder(context).allFields().getById(requested.first().contactId))
+    }
+
+    @Test
+    fun onlyEnabledColumnsAreLoaded() {
+        val saved = createRandomContact {}
+        val contact = ContactsGetterBuilder(context)
+            .withName(saved.compositeName)
+            .addField(FieldType.NAME_DATA)
+            .setContactColumns(ContactColumn.DISPLAY_NAME)
+            .setNameColumns(NameColumn.FULL_NAME)
+            .firstOrNull()!!
+        Assert.assertEquals(saved.compositeName, contact.compositeName)
+        Assert.assertEquals(saved.compositeName, contact.nameData.fullName)
+        Assert.assertTrue(contact.nameData.firstName.isEmpty())
+        Assert.assertTrue(contact.lookupKey.isNullOrEmpty())
+        Assert.assertEquals(0, contact.lastModificationDate)
+    }
+
     @Throws(Exception::class)
     private fun generateListOfRandomContacts(): List<ContactData> {
         val dataList = ArrayList<ContactData>()
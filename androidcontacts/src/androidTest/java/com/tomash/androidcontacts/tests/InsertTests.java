@@ -1,7 +1,10 @@
 package com.tomash.androidcontacts.tests;
 
+import android.database.Cursor;
+import android.provider.ContactsContract;
 import com.tomash.androidcontacts.BaseTest;
 import com.tomash.androidcontacts.contactgetter.entity.ContactData;
+import com.tomash.androidcontacts.contactgetter.interfaces.SaveProgressListener;
 import com.tomash.androidcontacts.contactgetter.main.ContactDataFactory;
 import com.tomash.androidcontacts.contactgetter.main.contactsGetter.ContactsGetterBuilder;
 import com.tomash.androidcontacts.contactgetter.main.contactsSaver.ContactsSaverBuilder;
@@ -40,6 +43,42 @@ public class InsertTests extends BaseTest {
         }
     }
 
+    @Test
+    public void insertsListInChunksWithProgress() throws Exception {
+        List<ContactData> dataList = new ArrayList<>();
+        for (int i = 0; i < 1000; i++)
+            dataList.add(TestUtilsKt.createRandomContactData(1));
+        final List<Integer> progress = new ArrayList<>();
+        int[] ids = new ContactsSaverBuilder(TestUtilsKt.context)
+            .setProgressListener(new SaveProgressListener() {
+                @Override
+                public void onProgress(int savedCount, int totalCount) {
+                    Assert.assertEquals(1000, totalCount);
+                    progress.add(savedCount);
+                }
+            })
+            .saveContactsList(dataList);
+        Assert.assertEquals(1000, ids.length);
+        Assert.assertTrue(progress.size() > 1);
+        Assert.assertEquals(1000, (int) progress.get(progress.size() - 1));
+        Assert.assertEquals(1000, new ContactsGetterBuilder(TestUtilsKt.context).buildList().size());
+    }
+
+    @Test
+    public void atomicInsertSavesContactsWithData() throws Exception {
+        List<ContactData> dataList = new ArrayList<>();
+        for (int i = 0; i < 50; i++)
+            dataList.add(TestUtilsKt.createRandomContactData(1));
+        int[] ids = new ContactsSaverBuilder(TestUtilsKt.context)
+            .setAtomicInserts(true)
+            .saveContactsList(dataList);
+        Assert.assertEquals(50, ids.length);
+        for (int i = 0; i < ids.length; i++) {
+            ContactData saved = getFromDbById(ids[i]);
+            TestUtilsKt.assertContacts(dataList.get(i), saved, 1);
+        }
+    }
+
     @Test
     public void correctlyInsertsOneData() throws Exception {
         int bitmapSize = 10;
@@ -66,6 +105,34 @@ public class InsertTests extends BaseTest {
         Assert.assertEquals(TestUtilsKt.getBitmapFromContactData(contactData2).getHeight(), firstBitmapSize);
     }
 
+    @Test
+    public void bigPhotoIsScaledToDisplayPhotoSize() throws Exception {
+        int bitmapSize = 3000;
+        List<ContactData> dataList = new ArrayList<>();
+        for (int i = 0; i < 5; i++)
+            dataList.add(TestUtilsKt.createRandomContactData(bitmapSize));
+        int[] ids = new ContactsSaverBuilder(TestUtilsKt.context)
+            .saveContactsList(dataList);
+        int displayMaxDim = getDisplayMaxDim();
+        for (int id : ids) {
+            int height = TestUtilsKt.getBitmapFromContactData(getFromDbById(id)).getHeight();
+            Assert.assertTrue(height > 0);
+            Assert.assertTrue(height <= displayMaxDim);
+        }
+    }
+
+    private int getDisplayMaxDim() {
+        Cursor cursor = TestUtilsKt.context.getContentResolver().query(ContactsContract.DisplayPhoto.CONTENT_MAX_DIMENSIONS_URI,
+            new String[]{ContactsContract.DisplayPhoto.DISPLAY_MAX_DIM}, null, null, null);
+        Assert.assertNotNull(cursor);
+        try {
+            Assert.assertTrue(cursor.moveToFirst());
+            return cursor.getInt(0);
+        } finally {
+            cursor.close();
+        }
+    }
+
     private ContactData getFromDbById(int id) {
         return new ContactsGetterBuilder(TestUtilsKt.context)
             .allFields()
@@ -0,0 +1,56 @@
+package com.tomash.androidcontacts.tests
+
+import androidx.test.platform.app.InstrumentationRegistry
+import com.tomash.androidcontacts.BaseTest
+import com.tomash.androidcontacts.contactgetter.entity.ContactData
+import com.tomash.androidcontacts.contactgetter.main.contactsDeleter.ContactsDeleter
+import com.tomash.androidcontacts.contactgetter.main.contactsGetter.ContactsDiff
+import com.tomash.androidcontacts.contactgetter.main.contactsGetter.ContactsGetterBuilder
+import com.tomash.androidcontacts.contactgetter.main.contactsGetter.LiveContactsQuery
+import com.tomash.androidcontacts.utils.context
+import com.tomash.androidcontacts.utils.createRandomContactData
+import com.tomash.androidcontacts.utils.saveAll
+import org.junit.Assert
+import org.junit.Test
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.TimeUnit
+
+class LiveQueryTests : BaseTest() {
+
+    @Test
+    fun notifiesAboutAddedAndRemovedContacts() {
+        List(5) { createRandomContactData() }.saveAll()
+        val diffs = LinkedBlockingQueue<Pair<List<ContactData>, ContactsDiff<ContactData>>>()
+        val query = ContactsGetterBuilder(context)
+            .allFields()
+            .buildLiveQuery()
+            .setDebounceMillis(100)
+            .addListener(object : LiveContactsQuery.Listener<ContactData> {
+                override fun onContactsChanged(contacts: List<ContactData>, diff: ContactsDiff<ContactData>) {
+                    diffs.add(contacts to diff)
+                }
+
+                override fun onError(e: Exception) {
+                    Assert.fail(e.message)
+                }
+            })
+        InstrumentationRegistry.getInstrumentation().runOnMainSync { query.start() }
+        try {
+            val (loaded, initial) = diffs.poll(10, TimeUnit.SECONDS)!!
+            Assert.assertEquals(5, loaded.size)
+            Assert.assertEquals(5, initial.addedContacts.size)
+
+            listOf(createRandomContactData()).saveAll()
+            val (afterAdd, added) = diffs.poll(10, TimeUnit.SECONDS)!!
+            Assert.assertEquals(6, afterAdd.size)
+            Assert.assertEquals(1, added.addedContacts.size)
+
+            ContactsDeleter(context).deleteContact(afterAdd.first())
+            val (afterDelete, removed) = diffs.poll(10, TimeUnit.SECONDS)!!
+            Assert.assertEquals(5, afterDelete.size)
+            Assert.assertEquals(listOf(afterAdd.first().contactId), removed.removedContactIds)
+        } finally {
+            InstrumentationRegistry.getInstrumentation().runOnMainSync { query.stop() }
+        }
+    }
+}
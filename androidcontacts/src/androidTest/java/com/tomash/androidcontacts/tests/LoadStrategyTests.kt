@@ -0,0 +1,163 @@
+package com.tomash.androidcontacts.tests
+
+import android.os.SystemClock
+import android.util.Log
+import com.tomash.androidcontacts.BaseTest
+import com.tomash.androidcontacts.contactgetter.entity.ContactData
+import com.tomash.androidcontacts.contactgetter.main.LoadStrategy
+import com.tomash.androidcontacts.contactgetter.main.Sorting
+import com.tomash.androidcontacts.contactgetter.main.contactsDeleter.ContactsDeleter
+import com.tomash.androidcontacts.contactgetter.main.contactsGetter.ContactsGetterBuilder
+import com.tomash.androidcontacts.utils.context
+import com.tomash.androidcontacts.utils.createRandomContactData
+import com.tomash.androidcontacts.utils.isEqual
+import com.tomash.androidcontacts.utils.saveAll
+import org.assertj.core.api.Assertions
+import org.junit.Assert
+import org.junit.Test
+import java.io.File
+
+class LoadStrategyTests : BaseTest() {
+
+    private fun getList(strategy: LoadStrategy, sorting: Sorting = Sorting.BY_DISPLAY_NAME_ASC) = ContactsGetterBuilder(context)
+        .allFields()
+        .setSortOrder(sorting)
+        .setLoadStrategy(strategy)
+        .buildList()
+
+    /**
+     * Median of several loads, so single slow load doesn't decide result
+     */
+    private fun measureLoad(strategy: LoadStrategy): Long {
+        getList(strategy)
+        return List(5) {
+            val start = SystemClock.elapsedRealtime()
+            getList(strategy)
+            SystemClock.elapsedRealtime() - start
+        }.sorted()[2]
+    }
+
+    private fun assertSameContacts(expected: List<ContactData>, actual: List<ContactData>) {
+        Assert.assertEquals(expected.size, actual.size)
+        expected.zip(actual).forEach { (first, second) ->
+            first.contactId isEqual second.contactId
+            first.compositeName isEqual second.compositeName
+            first.note isEqual second.note
+            first.nickName isEqual second.nickName
+            first.sipAddress isEqual second.sipAddress
+            first.organization isEqual second.organization
+            first.nameData isEqual second.nameData
+            first.accountName isEqual second.accountName
+            Assertions.assertThat(first.phoneList).containsExactlyInAnyOrderElementsOf(second.phoneList)
+            Assertions.assertThat(first.emailList).containsExactlyInAnyOrderElementsOf(second.emailList)
+            Assertions.assertThat(first.addressesList).containsExactlyInAnyOrderElementsOf(second.addressesList)
+            Assertions.assertThat(first.websitesList).containsExactlyInAnyOrderElementsOf(second.websitesList)
+            Assertions.assertThat(first.imAddressesList).containsExactlyInAnyOrderElementsOf(second.imAddressesList)
+            Assertions.assertThat(first.specialDatesList).containsExactlyInAnyOrderElementsOf(second.specialDatesList)
+            Assertions.assertThat(first.relationsList).containsExactlyInAnyOrderElementsOf(second.relationsList)
+            Assertions.assertThat(first.groupList).containsExactlyInAnyOrderElementsOf(second.groupList)
+        }
+    }
+
+    @Test
+    fun singleScanLoadsSameContactsAsPerField() {
+        List(20) { createRandomContactData() }.saveAll()
+        assertSameContacts(getList(LoadStrategy.PER_FIELD), getList(LoadStrategy.SINGLE_SCAN))
+    }
+
+    @Test
+    fun mergeJoinLoadsSameContactsAsPerField() {
+        List(20) { createRandomContactData() }.saveAll()
+        assertSameContacts(getList(LoadStrategy.PER_FIELD), getList(LoadStrategy.MERGE_JOIN))
+    }
+
+    @Test
+    fun mergeJoinKeepsDescendingOrder() {
+        List(20) { createRandomContactData() }.saveAll()
+        assertSameContacts(getList(LoadStrategy.PER_FIELD, Sorting.BY_DISPLAY_NAME_DESC),
+            getList(LoadStrategy.MERGE_JOIN, Sorting.BY_DISPLAY_NAME_DESC))
+    }
+
+    @Test
+    fun parallelLoadingLoadsSameContactsAsSequential() {
+        List(20) { createRandomContactData() }.saveAll()
+        val parallel = ContactsGetterBuilder(context)
+            .allFields()
+            .setParallelism(4)
+            .buildList()
+        assertSameContacts(getList(LoadStrategy.PER_FIELD), parallel)
+    }
+
+    @Test
+    fun lazyLoadsSameContactsAsPerField() {
+        List(20) { createRandomContactData() }.saveAll()
+        val lazy = getList(LoadStrategy.LAZY)
+        Assert.assertTrue(lazy.all { it.fieldsLoader != null })
+        ContactsGetterBuilder.loadFields(lazy.take(5))
+        Assert.assertTrue(lazy.take(5).all { it.fieldsLoader == null })
+        assertSameContacts(getList(LoadStrategy.PER_FIELD), lazy)
+        Assert.assertTrue(lazy.all { it.fieldsLoader == null })
+    }
+
+    @Test
+    fun settersAndEqualsDoNotLoadLazyContacts() {
+        List(5) { createRandomContactData() }.saveAll()
+        val lazy = getList(LoadStrategy.LAZY)
+        lazy.first().setNote("note")
+        Assert.assertNotEquals(lazy[0], lazy[1])
+        Assert.assertTrue(lazy.all { it.fieldsLoader != null })
+    }
+
+    @Test
+    fun benchmarkLoadStrategies() {
+        List(200) { createRandomContactData() }.saveAll()
+        val timings = LoadStrategy.values().associate { it to measureLoad(it) }
+        timings.forEach { (strategy, time) -> Log.d("LoadStrategyTests", "$strategy took $time ms per load") }
+        val perField = timings.getValue(LoadStrategy.PER_FIELD)
+        // strategies with one data query shouldn't lose to a query per field, slack covers timer resolution and noise
+        Assertions.assertThat(timings.getValue(LoadStrategy.SINGLE_SCAN)).isLessThanOrEqualTo(perField * 2 + 20)
+        Assertions.assertThat(timings.getValue(LoadStrategy.MERGE_JOIN)).isLessThanOrEqualTo(perField * 2 + 20)
+    }
+
+    @Test
+    fun iteratorStreamsSameContactsAsList() {
+        List(20) { createRandomContactData() }.saveAll()
+        val streamed = ContactsGetterBuilder(context)
+            .allFields()
+            .buildIterator()
+            .use { it.asSequence().toList() }
+        assertSameContacts(getList(LoadStrategy.PER_FIELD).sortedBy { it.contactId }, streamed)
+    }
+
+    @Test
+    fun iteratorWithSelectionStreamsSameContactsAsList() {
+        val saved = List(20) { createRandomContactData() }
+        saved.saveAll()
+        val name = saved.first().compositeName
+        val builder = ContactsGetterBuilder(context)
+            .allFields()
+            .withName(name)
+        val streamed = builder.buildIterator().use { it.asSequence().toList() }
+        Assert.assertEquals(1, streamed.size)
+        assertSameContacts(builder.buildList(), streamed)
+    }
+
+    @Test
+    fun snapshotIsReconciledWithChanges() {
+        val saved = List(20) { createRandomContactData() }
+        saved.saveAll()
+        val snapshotFile = File(context.cacheDir, "contacts_snapshot")
+        snapshotFile.delete()
+        val builder = ContactsGetterBuilder(context)
+            .allFields()
+            .setSnapshotFile(snapshotFile)
+        Assert.assertTrue(builder.buildListFromSnapshot().isEmpty())
+        val loaded = builder.buildList()
+        assertSameContacts(loaded, builder.buildListFromSnapshot())
+        listOf(createRandomContactData()).saveAll()
+        ContactsDeleter(context).deleteContact(loaded.first())
+        assertSameContacts(getList(LoadStrategy.PER_FIELD), builder.buildList())
+        assertSameContacts(getList(LoadStrategy.PER_FIELD), builder.buildListFromSnapshot())
+        snapshotFile.delete()
+    }
+}
@@ -3,7 +3,10 @@ package com.tomash.androidcontacts.contactgetter.entity;
 import android.graphics.Bitmap;
 import android.net.Uri;
 
+import com.tomash.androidcontacts.contactgetter.interfaces.FieldsLoader;
+
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 
@@ -31,6 +34,7 @@ public abstract class ContactData {
     private Uri updatedPhotoUri;
     private Bitmap updatedBitmap;
     private boolean isFavorite;
+    private volatile FieldsLoader fieldsLoader;
 
     public ContactData() {
     }
@@ -49,6 +53,7 @@ public abstract class ContactData {
     }
 
     public List<Email> getEmailList() {
+        loadFields();
         return emailList;
     }
 
@@ -59,6 +64,7 @@ public abstract class ContactData {
     }
 
     public List<PhoneNumber> getPhoneList() {
+        loadFields();
         return phoneList;
     }
 
@@ -112,6 +118,7 @@ public abstract class ContactData {
     }
 
     public List<Address> getAddressesList() {
+        loadFields();
         return addressesList;
     }
 
@@ -131,6 +138,7 @@ public abstract class ContactData {
     }
 
     public List<String> getWebsitesList() {
+        loadFields();
         return websitesList;
     }
 
@@ -141,6 +149,7 @@ public abstract class ContactData {
     }
 
     public String getNote() {
+        loadFields();
         return note;
     }
 
@@ -168,6 +177,7 @@ public abstract class ContactData {
     }
 
     public List<IMAddress> getImAddressesList() {
+        loadFields();
         return imAddressesList;
     }
 
@@ -178,6 +188,7 @@ public abstract class ContactData {
     }
 
     public List<Relation> getRelationsList() {
+        loadFields();
         return relationsList;
     }
 
@@ -188,6 +199,7 @@ public abstract class ContactData {
     }
 
     public List<SpecialDate> getSpecialDatesList() {
+        loadFields();
         return specialDatesList;
     }
 
@@ -198,6 +210,7 @@ public abstract class ContactData {
     }
 
     public String getNickName() {
+        loadFields();
         return nickName;
     }
 
@@ -208,6 +221,7 @@ public abstract class ContactData {
     }
 
     public String getSipAddress() {
+        loadFields();
         return sipAddress;
     }
 
@@ -218,6 +232,7 @@ public abstract class ContactData {
     }
 
     public Organization getOrganization() {
+        loadFields();
         return organization;
     }
 
@@ -228,6 +243,7 @@ public abstract class ContactData {
     }
 
     public NameData getNameData() {
+        loadFields();
         return nameData;
     }
 
@@ -247,6 +263,7 @@ public abstract class ContactData {
     }
 
     public List<Group> getGroupList() {
+        loadFields();
         return groupList;
     }
 
@@ -257,6 +274,7 @@ public abstract class ContactData {
     }
 
     public ArrayList<String> getAccountName() {
+        loadFields();
         return accountName;
     }
 
@@ -266,6 +284,7 @@ public abstract class ContactData {
     }
 
     public ArrayList<String> getAccountType() {
+        loadFields();
         return accountType;
     }
 
@@ -274,6 +293,11 @@ public abstract class ContactData {
         return this;
     }
 
+    /**
+     * Fields are compared as they are, fields of contacts built with {@link com.tomash.androidcontacts.contactgetter.main.LoadStrategy#LAZY}
+     * are not loaded, so contacts should be loaded with
+     * {@link com.tomash.androidcontacts.contactgetter.main.contactsGetter.ContactsGetterBuilder#loadFields(List)} before comparison
+     */
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -309,6 +333,33 @@ public abstract class ContactData {
         return this;
     }
 
+    /**
+     * <p>
+     * Used by {@link com.tomash.androidcontacts.contactgetter.main.LoadStrategy#LAZY}, fields of contact are loaded
+     * by this loader on first access to their getters
+     * </p>
+     * <p>
+     * Setters don't load fields, values set before fields are loaded are replaced by loaded values
+     * </p>
+     */
+    public ContactData setFieldsLoader(FieldsLoader fieldsLoader) {
+        this.fieldsLoader = fieldsLoader;
+        return this;
+    }
+
+    /**
+     * @return loader of fields or null if fields of this contact are already loaded
+     */
+    public FieldsLoader getFieldsLoader() {
+        return fieldsLoader;
+    }
+
+    private void loadFields() {
+        FieldsLoader loader = fieldsLoader;
+        if (loader != null)
+            loader.load(Collections.singletonList(this));
+    }
+
     @Override
     public int hashCode() {
         return contactId;
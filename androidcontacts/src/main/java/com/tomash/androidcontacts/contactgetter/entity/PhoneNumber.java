@@ -3,10 +3,12 @@ package com.tomash.androidcontacts.contactgetter.entity;
 import android.content.Context;
 import android.provider.ContactsContract;
 import com.tomash.androidcontacts.contactgetter.interfaces.WithLabel;
+import com.tomash.androidcontacts.contactgetter.utils.FilterUtils;
 
 public class PhoneNumber extends WithLabel {
 
     private boolean isPrimary;
+    private String normalizedNumber;
 
     public PhoneNumber(String mainData, String labelName) {
         super(mainData, labelName);
@@ -40,6 +42,30 @@ public class PhoneNumber extends WithLabel {
         return 0;
     }
 
+    @Override
+    public PhoneNumber setMainData(String mainData) {
+        super.setMainData(mainData);
+        normalizedNumber = null;
+        return this;
+    }
+
+    /**
+     * <p>
+     * Gets number with all characters except digits and '+' removed
+     * </p>
+     * <p>
+     * Normalized number is cached, so filters don't normalize number on every check
+     * </p>
+     */
+    public String getNormalizedNumber() {
+        String normalized = normalizedNumber;
+        if (normalized == null) {
+            normalized = FilterUtils.normalizeNumber(getMainData());
+            normalizedNumber = normalized;
+        }
+        return normalized;
+    }
+
     public boolean isPrimary() {
         return isPrimary;
     }
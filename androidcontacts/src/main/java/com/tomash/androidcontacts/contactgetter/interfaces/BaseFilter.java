@@ -10,6 +10,9 @@ package com.tomash.androidcontacts.contactgetter.interfaces;
  */
 
 public abstract class BaseFilter<T, V> implements Filterable {
+    public static final int FIELD_FILTER_COST = 10;
+    public static final int LIST_FILTER_COST = 20;
+
     /**
      * <p>
      * This pattern will be used for all future filtering.
@@ -39,4 +42,32 @@ public abstract class BaseFilter<T, V> implements Filterable {
      * @return
      */
     protected abstract boolean getFilterCondition(V data, V pattern);
+
+    /**
+     * <p>
+     * Estimated cost of checking one contact, cheaper and more selective filters are applied first
+     * </p>
+     * <p>
+     * E.g. exact match of one field is cheaper than substring search in list of fields
+     * </p>
+     *
+     * @return relative cost of this filter
+     */
+    public int getFilterCost() {
+        return FIELD_FILTER_COST;
+    }
+
+    /**
+     * <p>
+     * Describes this filter as condition on data table, so only contacts that can pass it are queried
+     * </p>
+     * <p>
+     * Filters without predicate are applied only to loaded contacts
+     * </p>
+     *
+     * @return predicate or null if this filter can't be checked by provider
+     */
+    public ProviderPredicate getProviderPredicate() {
+        return null;
+    }
 }
@@ -0,0 +1,20 @@
+package com.tomash.androidcontacts.contactgetter.interfaces;
+
+import com.tomash.androidcontacts.contactgetter.entity.ContactData;
+
+/**
+ * <p>
+ * Creates empty contact objects that are filled with data while querying contacts.
+ * </p>
+ * <p>
+ * Called once for every loaded contact, so it should only construct new object.
+ * </p>
+ *
+ * @param <T> type of created contacts
+ */
+public interface ContactDataCreator<T extends ContactData> {
+    /**
+     * @return new empty contact object
+     */
+    T create();
+}
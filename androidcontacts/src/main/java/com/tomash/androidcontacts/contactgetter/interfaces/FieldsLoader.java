@@ -0,0 +1,22 @@
+package com.tomash.androidcontacts.contactgetter.interfaces;
+
+import com.tomash.androidcontacts.contactgetter.entity.ContactData;
+
+import java.util.List;
+
+/**
+ * <p>
+ * Loads fields of contacts that were built with {@link com.tomash.androidcontacts.contactgetter.main.LoadStrategy#LAZY}.
+ * </p>
+ * <p>
+ * Fields of many contacts are loaded with one query, so loader can load more contacts than requested.
+ * </p>
+ */
+public interface FieldsLoader {
+    /**
+     * Loads fields of contacts that are not loaded yet, contacts of other loaders are ignored
+     *
+     * @param contacts contacts which fields are needed
+     */
+    void load(List<? extends ContactData> contacts);
+}
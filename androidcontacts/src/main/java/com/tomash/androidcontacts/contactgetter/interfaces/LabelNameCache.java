@@ -0,0 +1,74 @@
+package com.tomash.androidcontacts.contactgetter.interfaces;
+
+import android.content.Context;
+import android.content.res.Configuration;
+import android.os.Build;
+
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * <p>
+ * Cache of label names resolved from resources, shared by all {@link WithLabel} objects of the same class.
+ * </p>
+ * <p>
+ * Names are resolved once per label and locale, cache is dropped as soon as locale of context changes.
+ * </p>
+ * <p>
+ * Cache is read without locks, so contacts loaded concurrently don't wait for each other.
+ * </p>
+ */
+final class LabelNameCache {
+    private static volatile LocaleLabelNames sLabelNames = new LocaleLabelNames(null);
+
+    private LabelNameCache() {
+    }
+
+    static String getLabelName(Context ctx, WithLabel withLabel, int labelId) {
+        Locale locale = getLocale(ctx.getResources().getConfiguration());
+        LocaleLabelNames localeLabelNames = sLabelNames;
+        if (locale == null || !locale.equals(localeLabelNames.mLocale)) {
+            localeLabelNames = new LocaleLabelNames(locale);
+            sLabelNames = localeLabelNames;
+        }
+        ConcurrentMap<Integer, String> labelNames = localeLabelNames.get(withLabel.getClass());
+        String labelName = labelNames.get(labelId);
+        if (labelName == null) {
+            labelName = withLabel.getLabelNameResId(ctx, labelId);
+            if (labelName != null)
+                labelNames.put(labelId, labelName);
+        }
+        return labelName;
+    }
+
+    @SuppressWarnings("deprecation")
+    private static Locale getLocale(Configuration configuration) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N)
+            return configuration.getLocales().isEmpty() ? null : configuration.getLocales().get(0);
+        return configuration.locale;
+    }
+
+    /**
+     * Label names of all classes resolved for one locale, replaced as a whole when locale changes
+     */
+    private static final class LocaleLabelNames {
+        private final Locale mLocale;
+        private final ConcurrentMap<Class<?>, ConcurrentMap<Integer, String>> mLabelNames = new ConcurrentHashMap<>();
+
+        LocaleLabelNames(Locale locale) {
+            this.mLocale = locale;
+        }
+
+        ConcurrentMap<Integer, String> get(Class<?> labelClass) {
+            ConcurrentMap<Integer, String> labelNames = mLabelNames.get(labelClass);
+            if (labelNames == null) {
+                labelNames = new ConcurrentHashMap<>();
+                ConcurrentMap<Integer, String> existing = mLabelNames.putIfAbsent(labelClass, labelNames);
+                if (existing != null)
+                    labelNames = existing;
+            }
+            return labelNames;
+        }
+    }
+}
@@ -25,10 +25,16 @@ public abstract class ListFilter<T, V> extends BaseFilter<T, V> {
 
     @Override
     public boolean passedFilter(ContactData contact) {
+        V pattern = getFilterPattern();
         for (T t : getFilterContainer(contact)) {
-            if (getFilterCondition(getFilterData(t), getFilterPattern()))
+            if (getFilterCondition(getFilterData(t), pattern))
                 return true;
         }
         return false;
     }
+
+    @Override
+    public int getFilterCost() {
+        return LIST_FILTER_COST;
+    }
 }
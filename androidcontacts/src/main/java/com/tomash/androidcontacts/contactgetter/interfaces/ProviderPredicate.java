@@ -0,0 +1,80 @@
+package com.tomash.androidcontacts.contactgetter.interfaces;
+
+/**
+ * <p>
+ * Description of filter as condition on rows of data table, used to query only contacts that can pass the filter.
+ * </p>
+ * <p>
+ * Contact is a candidate if any of its rows with this mimetype matches condition, filter itself is still applied to loaded contacts,
+ * so predicate should match at least all contacts that pass the filter.
+ * </p>
+ */
+public final class ProviderPredicate {
+    private final String mimeType;
+    private final String column;
+    private final Operator operator;
+    private final String argument;
+
+    /**
+     * @param mimeType mimetype of data rows, e.g. {@link android.provider.ContactsContract.CommonDataKinds.Email#CONTENT_ITEM_TYPE}
+     * @param column   data column to compare, e.g. {@link android.provider.ContactsContract.CommonDataKinds.Email#ADDRESS}
+     * @param operator how column is compared with argument
+     * @param argument value to compare with
+     */
+    public ProviderPredicate(String mimeType, String column, Operator operator, String argument) {
+        this.mimeType = mimeType;
+        this.column = column;
+        this.operator = operator;
+        this.argument = argument;
+    }
+
+    public String getMimeType() {
+        return mimeType;
+    }
+
+    public String getColumn() {
+        return column;
+    }
+
+    public Operator getOperator() {
+        return operator;
+    }
+
+    public String getArgument() {
+        return argument;
+    }
+
+    /**
+     * <p>
+     * Creates predicate for case insensitive filter
+     * </p>
+     * <p>
+     * SQLite ignores case only for ASCII letters, so null is returned for other patterns and filter is applied only in memory
+     * </p>
+     */
+    public static ProviderPredicate ignoreCase(String mimeType, String column, Operator operator, String pattern) {
+        if (pattern == null || pattern.isEmpty())
+            return null;
+        for (int i = 0; i < pattern.length(); i++) {
+            if (pattern.charAt(i) > 127)
+                return null;
+        }
+        return new ProviderPredicate(mimeType, column, operator, pattern);
+    }
+
+    @Override
+    public String toString() {
+        return mimeType + ":" + column + " " + operator + " " + argument;
+    }
+
+    public enum Operator {
+        /**
+         * Column is equal to argument ignoring case of ASCII letters
+         */
+        EQUALS_IGNORE_CASE,
+        /**
+         * Column contains argument ignoring case of ASCII letters
+         */
+        CONTAINS_IGNORE_CASE
+    }
+}
@@ -0,0 +1,17 @@
+package com.tomash.androidcontacts.contactgetter.interfaces;
+
+/**
+ * <p>
+ * Receives progress of saving list of contacts.
+ * </p>
+ * <p>
+ * Called on thread that saves contacts after every chunk written to contacts provider.
+ * </p>
+ */
+public interface SaveProgressListener {
+    /**
+     * @param savedCount count of contacts that are already saved
+     * @param totalCount count of all contacts that are being saved
+     */
+    void onProgress(int savedCount, int totalCount);
+}
@@ -37,7 +37,7 @@ public abstract class WithLabel {
         this.mainData = mainData;
         this.contactId = -1;
         this.labelId = isValidLabel(labelId) ? labelId : getDefaultLabelId();
-        this.labelName = getLabelNameResId(ctx, labelId);
+        this.labelName = LabelNameCache.getLabelName(ctx, this, labelId);
     }
 
 
@@ -53,12 +53,17 @@ public abstract class WithLabel {
         this.mainData = mainData;
         this.contactId = -1;
         this.labelId = getDefaultLabelId();
-        this.labelName = getLabelNameResId(ctx, labelId);
+        this.labelName = LabelNameCache.getLabelName(ctx, this, labelId);
     }
 
 
     /**
+     * <p>
      * Gets label resource by id
+     * </p>
+     * <p>
+     * Result is cached per class and locale, so it should depend only on label id and locale of context
+     * </p>
      *
      * @param id id of this label
      * @return string id of this label
@@ -0,0 +1,23 @@
+package com.tomash.androidcontacts.contactgetter.main;
+
+/**
+ * This enum contains columns of contacts table that can be enabled while querying contacts.
+ * Contact id is always queried.
+ */
+
+public enum ContactColumn {
+    /**
+     * Used for last modification date, always queried for deltas and snapshots
+     */
+    LAST_MODIFICATION_DATE,
+    PHOTO_URI,
+    LOOKUP_KEY,
+    /**
+     * Used for composite name, always queried for pages
+     */
+    DISPLAY_NAME,
+    /**
+     * Used for favorite flag
+     */
+    STARRED
+}
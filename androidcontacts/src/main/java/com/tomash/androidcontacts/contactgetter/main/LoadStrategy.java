@@ -0,0 +1,27 @@
+package com.tomash.androidcontacts.contactgetter.main;
+
+/**
+ * This enum contains strategies that can be used to load fields of contacts.
+ */
+
+public enum LoadStrategy {
+    /**
+     * Queries data table separately for every enabled {@link FieldType}
+     */
+    PER_FIELD,
+    /**
+     * Queries data table once for all enabled {@link FieldType} and dispatches every row by its mimetype
+     */
+    SINGLE_SCAN,
+    /**
+     * Queries contacts and data table ordered by contact id and merge-joins them, no intermediate maps are built.
+     * Contacts are sorted in memory afterwards, custom sort order from {@link com.tomash.androidcontacts.contactgetter.main.contactsGetter.ContactsGetterBuilder#setSortOrder(String)}
+     * falls back to {@link #SINGLE_SCAN}
+     */
+    MERGE_JOIN,
+    /**
+     * Queries only contacts table, fields of contact are loaded on first access together with following contacts
+     * with one data query restricted to their ids
+     */
+    LAZY
+}
@@ -0,0 +1,17 @@
+package com.tomash.androidcontacts.contactgetter.main;
+
+/**
+ * This enum contains parts of name data that can be enabled while querying contacts with {@link FieldType#NAME_DATA}.
+ */
+
+public enum NameColumn {
+    FULL_NAME,
+    FIRST_NAME,
+    SURNAME,
+    PREFIX,
+    MIDDLE_NAME,
+    SUFFIX,
+    PHONETIC_FIRST,
+    PHONETIC_MIDDLE,
+    PHONETIC_LAST
+}
@@ -0,0 +1,149 @@
+package com.tomash.androidcontacts.contactgetter.main.contactsGetter;
+
+import android.content.ContentResolver;
+import android.provider.ContactsContract;
+
+import com.tomash.androidcontacts.contactgetter.interfaces.ProviderPredicate;
+import com.tomash.androidcontacts.contactgetter.utils.FilterUtils;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <p>
+ * Subquery that restricts contacts query to contacts that can match a filter, so only these contacts are loaded.
+ * </p>
+ * <p>
+ * Candidates should be a superset of contacts that pass the filter, filter itself is still applied to loaded contacts.
+ * </p>
+ * <p>
+ * Candidates are matched by provider together with contacts query, so no ids are queried or inlined on client side.
+ * Subquery reads internal view of AOSP provider, see {@link #withQueriedIds(ContentResolver)} for providers without it.
+ * </p>
+ */
+final class CandidateLookup {
+    private static final String MATCH_NOTHING = "0";
+
+    private final String mDataSelection;
+    private final String[] mSelectionArgs;
+    private final String mDescription;
+    // ids of candidates if they were queried instead of subquery
+    private final List<Integer> mContactIds;
+
+    private CandidateLookup(String dataSelection, String[] selectionArgs, String description) {
+        this(dataSelection, selectionArgs, description, null);
+    }
+
+    private CandidateLookup(String dataSelection, String[] selectionArgs, String description, List<Integer> contactIds) {
+        mDataSelection = dataSelection;
+        mSelectionArgs = selectionArgs;
+        mDescription = description;
+        mContactIds = contactIds;
+    }
+
+    /**
+     * @return condition on id of contacts query
+     */
+    String getSelection() {
+        if (mDataSelection == null || (mContactIds != null && mContactIds.isEmpty()))
+            return MATCH_NOTHING;
+        if (mContactIds != null)
+            return ProviderViews.getInSelection(ContactsContract.Contacts._ID, mContactIds);
+        return ContactsContract.Contacts._ID + " IN (SELECT " + ContactsContract.Data.CONTACT_ID + " FROM " + ProviderViews.DATA_VIEW
+            + " WHERE " + mDataSelection + ")";
+    }
+
+    /**
+     * @return arguments of {@link #getSelection()}
+     */
+    List<String> getSelectionArgs() {
+        if (mContactIds != null)
+            return Collections.emptyList();
+        return Arrays.asList(mSelectionArgs);
+    }
+
+    /**
+     * <p>
+     * Used when provider doesn't have view of subquery, see {@link ProviderViews}
+     * </p>
+     * <p>
+     * Ids of candidates are queried through {@link ContactsContract.Data#CONTENT_URI} and inlined, so selection has no arguments
+     * </p>
+     *
+     * @return lookup with ids of current candidates
+     */
+    CandidateLookup withQueriedIds(ContentResolver resolver) {
+        if (mDataSelection == null)
+            return this;
+        List<Integer> ids = ProviderViews.readIds(resolver.query(ContactsContract.Data.CONTENT_URI,
+            new String[]{ContactsContract.Data.CONTACT_ID}, mDataSelection, mSelectionArgs, null), ContactsContract.Data.CONTACT_ID);
+        return new CandidateLookup(mDataSelection, mSelectionArgs, mDescription, ids);
+    }
+
+    /**
+     * Number is compared by the same function that is used by phone lookup of provider, so it is matched in any format
+     */
+    static CandidateLookup byPhone(String number) {
+        String description = "phone=" + number;
+        if (number == null || number.trim().isEmpty())
+            return new CandidateLookup(null, new String[0], description);
+        return new CandidateLookup(ContactsContract.Data.MIMETYPE + " = ? AND PHONE_NUMBERS_EQUAL("
+            + ContactsContract.CommonDataKinds.Phone.NUMBER + ", ?)",
+            new String[]{ContactsContract.CommonDataKinds.Phone.CONTENT_ITEM_TYPE, number}, description);
+    }
+
+    /**
+     * <p>
+     * Finds phone rows which contain all characters of number in the same order
+     * </p>
+     * <p>
+     * E.g. "0671" is searched as "%0%6%7%1%", so formatted numbers like "(067) 1.." match as well
+     * </p>
+     * <p>
+     * Number is normalized the same way as by {@link FilterUtils#withPhoneLikeFilter(String)}, so formatting of query
+     * doesn't have to be present in stored number
+     * </p>
+     */
+    static CandidateLookup byPhoneLike(String number) {
+        String normalizedNumber = FilterUtils.normalizeNumber(number);
+        StringBuilder pattern = new StringBuilder("%");
+        for (int i = 0; i < normalizedNumber.length(); i++)
+            appendEscaped(pattern, normalizedNumber.charAt(i)).append('%');
+        return new CandidateLookup(ContactsContract.Data.MIMETYPE + " = ? AND " + ContactsContract.CommonDataKinds.Phone.NUMBER
+            + " LIKE ? ESCAPE '\\'", new String[]{ContactsContract.CommonDataKinds.Phone.CONTENT_ITEM_TYPE, pattern.toString()},
+            "phoneLike=" + number);
+    }
+
+    /**
+     * Finds contacts with data row matching predicate of filter
+     */
+    static CandidateLookup byPredicate(ProviderPredicate predicate) {
+        String argument = escapeLike(predicate.getArgument());
+        if (predicate.getOperator() == ProviderPredicate.Operator.CONTAINS_IGNORE_CASE)
+            argument = "%" + argument + "%";
+        return new CandidateLookup(ContactsContract.Data.MIMETYPE + " = ? AND " + predicate.getColumn() + " LIKE ? ESCAPE '\\'",
+            new String[]{predicate.getMimeType(), argument}, predicate.toString());
+    }
+
+    /**
+     * LIKE ignores case of ASCII letters, so it is used for equality as well with wildcards escaped
+     */
+    private static String escapeLike(String value) {
+        StringBuilder escaped = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++)
+            appendEscaped(escaped, value.charAt(i));
+        return escaped.toString();
+    }
+
+    private static StringBuilder appendEscaped(StringBuilder builder, char c) {
+        if (c == '%' || c == '_' || c == '\\')
+            builder.append('\\');
+        return builder.append(c);
+    }
+
+    @Override
+    public String toString() {
+        return mDescription;
+    }
+}
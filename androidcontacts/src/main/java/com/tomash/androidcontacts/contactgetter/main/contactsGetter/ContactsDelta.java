@@ -0,0 +1,47 @@
+package com.tomash.androidcontacts.contactgetter.main.contactsGetter;
+
+import com.tomash.androidcontacts.contactgetter.entity.ContactData;
+
+import java.util.List;
+
+/**
+ * Changes of address book loaded by {@link ContactsGetterBuilder#buildDelta(long)}
+ *
+ * @param <T> type of changed contacts
+ */
+public class ContactsDelta<T extends ContactData> {
+    private final List<T> changedContacts;
+    private final List<Integer> deletedContactIds;
+    private final long watermark;
+
+    ContactsDelta(List<T> changedContacts, List<Integer> deletedContactIds, long watermark) {
+        this.changedContacts = changedContacts;
+        this.deletedContactIds = deletedContactIds;
+        this.watermark = watermark;
+    }
+
+    /**
+     * Contacts that were created or updated after timestamp passed to {@link ContactsGetterBuilder#buildDelta(long)}
+     */
+    public List<T> getChangedContacts() {
+        return changedContacts;
+    }
+
+    /**
+     * Ids of contacts that were deleted after timestamp passed to {@link ContactsGetterBuilder#buildDelta(long)}
+     */
+    public List<Integer> getDeletedContactIds() {
+        return deletedContactIds;
+    }
+
+    /**
+     * @return latest change timestamp seen in this delta, should be passed to next {@link ContactsGetterBuilder#buildDelta(long)} call
+     */
+    public long getWatermark() {
+        return watermark;
+    }
+
+    public boolean isEmpty() {
+        return changedContacts.isEmpty() && deletedContactIds.isEmpty();
+    }
+}
@@ -0,0 +1,47 @@
+package com.tomash.androidcontacts.contactgetter.main.contactsGetter;
+
+import com.tomash.androidcontacts.contactgetter.entity.ContactData;
+
+import java.util.List;
+
+/**
+ * Changes of contacts of {@link LiveContactsQuery} since previous notification
+ *
+ * @param <T> type of contacts
+ */
+public class ContactsDiff<T extends ContactData> {
+    private final List<T> addedContacts;
+    private final List<T> updatedContacts;
+    private final List<Integer> removedContactIds;
+
+    ContactsDiff(List<T> addedContacts, List<T> updatedContacts, List<Integer> removedContactIds) {
+        this.addedContacts = addedContacts;
+        this.updatedContacts = updatedContacts;
+        this.removedContactIds = removedContactIds;
+    }
+
+    /**
+     * Contacts that started to match query, all contacts on first load
+     */
+    public List<T> getAddedContacts() {
+        return addedContacts;
+    }
+
+    /**
+     * New versions of contacts that were changed and still match query
+     */
+    public List<T> getUpdatedContacts() {
+        return updatedContacts;
+    }
+
+    /**
+     * Ids of contacts that were deleted or don't match query anymore
+     */
+    public List<Integer> getRemovedContactIds() {
+        return removedContactIds;
+    }
+
+    public boolean isEmpty() {
+        return addedContacts.isEmpty() && updatedContacts.isEmpty() && removedContactIds.isEmpty();
+    }
+}
@@ -20,7 +20,6 @@ import android.provider.ContactsContract.CommonDataKinds.SipAddress;
 import android.provider.ContactsContract.CommonDataKinds.StructuredName;
 import android.provider.ContactsContract.CommonDataKinds.StructuredPostal;
 import android.provider.ContactsContract.CommonDataKinds.Website;
-import android.util.SparseArray;
 
 import com.tomash.androidcontacts.contactgetter.entity.Address;
 import com.tomash.androidcontacts.contactgetter.entity.ContactData;
@@ -32,21 +31,36 @@ import com.tomash.androidcontacts.contactgetter.entity.Organization;
 import com.tomash.androidcontacts.contactgetter.entity.PhoneNumber;
 import com.tomash.androidcontacts.contactgetter.entity.Relation;
 import com.tomash.androidcontacts.contactgetter.entity.SpecialDate;
+import com.tomash.androidcontacts.contactgetter.interfaces.BaseFilter;
+import com.tomash.androidcontacts.contactgetter.interfaces.ContactDataCreator;
 import com.tomash.androidcontacts.contactgetter.interfaces.WithLabel;
+import com.tomash.androidcontacts.contactgetter.main.ContactColumn;
 import com.tomash.androidcontacts.contactgetter.main.FieldType;
+import com.tomash.androidcontacts.contactgetter.main.LoadStrategy;
+import com.tomash.androidcontacts.contactgetter.main.NameColumn;
+import com.tomash.androidcontacts.contactgetter.main.phoneIndex.PhoneIndex;
+import com.tomash.androidcontacts.contactgetter.utils.IntObjectMap;
 
+import java.lang.reflect.Constructor;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
 
 class ContactsGetter {
     private final ContentResolver mResolver;
     private final Context mCtx;
     private final List<FieldType> mEnabledFields;
-    private final String[] mSelectionArgs;
+    private String[] mSelectionArgs;
     private final String mSorting;
-    private final String mSelection;
+    private String mSelection;
     private static final String MAIN_DATA_KEY = "data1";
     private static final String LABEL_DATA_KEY = "data2";
     private static final String CUSTOM_LABEL_DATA_KEY = "data3";
@@ -58,7 +72,68 @@ class ContactsGetter {
             ContactsContract.Contacts.PHOTO_URI, ContactsContract.Contacts.LOOKUP_KEY, ContactsContract.Contacts.DISPLAY_NAME, ContactsContract.Contacts.STARRED};
     private static final String[] ADDITIONAL_DATA_PROJECTION = new String[]{ContactsContract.Contacts._ID,
             ContactsContract.RawContacts.ACCOUNT_TYPE, ContactsContract.RawContacts.ACCOUNT_NAME, ContactsContract.RawContacts.CONTACT_ID};
-    private Class<? extends ContactData> mContactDataClass;
+    private static final String[] DATA_SCAN_PROJECTION = new String[]{ID_KEY, ContactsContract.Data.MIMETYPE, ContactsContract.Data.IS_PRIMARY,
+            ContactsContract.Data.DATA1, ContactsContract.Data.DATA2, ContactsContract.Data.DATA3, ContactsContract.Data.DATA4, ContactsContract.Data.DATA5,
+            ContactsContract.Data.DATA6, ContactsContract.Data.DATA7, ContactsContract.Data.DATA8, ContactsContract.Data.DATA9};
+    private static final ContactDataCreator<ContactData> DEFAULT_CONTACT_DATA_CREATOR = new ContactDataCreator<ContactData>() {
+        @Override
+        public ContactData create() {
+            return new ContactData() {
+            };
+        }
+    };
+    private ContactDataCreator<? extends ContactData> mContactDataCreator = DEFAULT_CONTACT_DATA_CREATOR;
+    private LoadStrategy mLoadStrategy = LoadStrategy.PER_FIELD;
+    static final int MAX_RESTRICTED_IDS = 1000;
+    private int mLimit;
+    private Executor mExecutor;
+    private Comparator<ContactData> mSortingComparator;
+    private String[] mContactsProjection = CONTACTS_PROJECTION;
+    private String[] mNameProjection = getNameProjection(EnumSet.allOf(NameColumn.class));
+    private final WithLabelCreator<Address> mAddressCreator = new WithLabelCreator<Address>() {
+        @Override
+        public Address create(String mainData, int contactId, int labelId, String labelName) {
+            Address address = new Address(mCtx, mainData, labelId);
+            address.setContactId(contactId);
+            return address;
+        }
+    };
+    private final WithLabelCreator<Email> mEmailCreator = new WithLabelCreator<Email>() {
+        @Override
+        public Email create(String mainData, int contactId, int labelId, String labelName) {
+            Email email;
+            if (labelName != null)
+                email = new Email(mainData, labelName);
+            else
+                email = new Email(mCtx, mainData, labelId);
+            email.setContactId(contactId);
+            return email;
+        }
+    };
+    private final WithLabelCreator<SpecialDate> mSpecialDateCreator = new WithLabelCreator<SpecialDate>() {
+        @Override
+        public SpecialDate create(String mainData, int contactId, int labelId, String labelName) {
+            SpecialDate specialData;
+            if (labelName != null)
+                specialData = new SpecialDate(mainData, labelName);
+            else
+                specialData = new SpecialDate(mCtx, mainData, labelId);
+            specialData.setContactId(contactId);
+            return specialData;
+        }
+    };
+    private final WithLabelCreator<Relation> mRelationCreator = new WithLabelCreator<Relation>() {
+        @Override
+        public Relation create(String mainData, int contactId, int labelId, String labelName) {
+            Relation relation;
+            if (labelName != null)
+                relation = new Relation(mainData, labelName);
+            else
+                relation = new Relation(mCtx, mainData, labelId);
+            relation.setContactId(contactId);
+            return relation;
+        }
+    };
 
     ContactsGetter(Context ctx, List<FieldType> enabledFields, String sorting, String[] selectionArgs, String selection) {
         this.mCtx = ctx;
@@ -69,18 +144,149 @@ class ContactsGetter {
         this.mSelection = selection;
     }
 
-    ContactsGetter setContactDataClass(Class<? extends ContactData> mContactDataClass) {
-        this.mContactDataClass = mContactDataClass;
+    /**
+     * Resolves constructor once, so reflection is used only to create new instance for every contact
+     */
+    ContactsGetter setContactDataClass(Class<? extends ContactData> contactDataClass) {
+        if (contactDataClass == null)
+            return setContactDataCreator(null);
+        final Constructor<? extends ContactData> constructor;
+        try {
+            constructor = contactDataClass.getConstructor();
+        } catch (NoSuchMethodException e) {
+            throw new IllegalArgumentException(contactDataClass.getName() + " should have public constructor without parameters", e);
+        }
+        return setContactDataCreator(new ContactDataCreator<ContactData>() {
+            @Override
+            public ContactData create() {
+                try {
+                    return constructor.newInstance();
+                } catch (Exception e) {
+                    throw new IllegalStateException("Failed to create " + constructor.getDeclaringClass().getName(), e);
+                }
+            }
+        });
+    }
+
+    ContactsGetter setContactDataCreator(ContactDataCreator<? extends ContactData> contactDataCreator) {
+        this.mContactDataCreator = contactDataCreator == null ? DEFAULT_CONTACT_DATA_CREATOR : contactDataCreator;
+        return this;
+    }
+
+    ContactsGetter setLoadStrategy(LoadStrategy loadStrategy) {
+        this.mLoadStrategy = loadStrategy;
+        return this;
+    }
+
+    ContactsGetter setExecutor(Executor executor) {
+        this.mExecutor = executor;
+        return this;
+    }
+
+    /**
+     * Comparator that gives the same order as sort order of query, {@link LoadStrategy#MERGE_JOIN} reads contacts ordered by id
+     * and restores sort order with it. Without comparator contacts with custom sort order are loaded with
+     * {@link LoadStrategy#SINGLE_SCAN}
+     */
+    ContactsGetter setSortingComparator(Comparator<ContactData> sortingComparator) {
+        this.mSortingComparator = sortingComparator;
+        return this;
+    }
+
+    /**
+     * Only id and given columns are queried from contacts table, values of other columns are left default
+     */
+    ContactsGetter setContactColumns(EnumSet<ContactColumn> columns) {
+        List<String> projection = new ArrayList<>(columns.size() + 1);
+        projection.add(ContactsContract.Contacts._ID);
+        for (ContactColumn column : columns)
+            projection.add(getContactsColumnName(column));
+        this.mContactsProjection = projection.toArray(new String[projection.size()]);
+        return this;
+    }
+
+    /**
+     * Only given parts are queried from structured name rows, used by {@link LoadStrategy#PER_FIELD} only
+     * as other strategies share data columns of all mimetypes
+     */
+    ContactsGetter setNameColumns(EnumSet<NameColumn> columns) {
+        this.mNameProjection = getNameProjection(columns);
+        return this;
+    }
+
+    private static String getContactsColumnName(ContactColumn column) {
+        switch (column) {
+            case LAST_MODIFICATION_DATE:
+                return ContactsContract.Contacts.CONTACT_LAST_UPDATED_TIMESTAMP;
+            case PHOTO_URI:
+                return ContactsContract.Contacts.PHOTO_URI;
+            case LOOKUP_KEY:
+                return ContactsContract.Contacts.LOOKUP_KEY;
+            case DISPLAY_NAME:
+                return ContactsContract.Contacts.DISPLAY_NAME;
+            case STARRED:
+                return ContactsContract.Contacts.STARRED;
+            default:
+                throw new IllegalArgumentException("Unknown column " + column);
+        }
+    }
+
+    private static String[] getNameProjection(EnumSet<NameColumn> columns) {
+        List<String> projection = new ArrayList<>(columns.size() + 1);
+        projection.add(ID_KEY);
+        for (NameColumn column : columns)
+            projection.add(getNameColumnName(column));
+        return projection.toArray(new String[projection.size()]);
+    }
+
+    private static String getNameColumnName(NameColumn column) {
+        switch (column) {
+            case FULL_NAME:
+                return StructuredName.DISPLAY_NAME;
+            case FIRST_NAME:
+                return StructuredName.GIVEN_NAME;
+            case SURNAME:
+                return StructuredName.FAMILY_NAME;
+            case PREFIX:
+                return StructuredName.PREFIX;
+            case MIDDLE_NAME:
+                return StructuredName.MIDDLE_NAME;
+            case SUFFIX:
+                return StructuredName.SUFFIX;
+            case PHONETIC_FIRST:
+                return StructuredName.PHONETIC_GIVEN_NAME;
+            case PHONETIC_MIDDLE:
+                return StructuredName.PHONETIC_MIDDLE_NAME;
+            case PHONETIC_LAST:
+                return StructuredName.PHONETIC_FAMILY_NAME;
+            default:
+                throw new IllegalArgumentException("Unknown column " + column);
+        }
+    }
+
+    ContactsGetter setLimit(int limit) {
+        this.mLimit = limit;
         return this;
     }
 
     private Cursor getContactsCursorWithSelection(String ordering, String selection, String[] selectionArgs) {
-        return mResolver.query(ContactsContract.Contacts.CONTENT_URI,
-                CONTACTS_PROJECTION, selection, selectionArgs, ordering);
+        return mResolver.query(getContactsUri(),
+                mContactsProjection, selection, selectionArgs, ordering);
+    }
+
+    private Uri getContactsUri() {
+        Uri contactsUri = ContactsContract.Contacts.CONTENT_URI;
+        if (mLimit > 0)
+            contactsUri = contactsUri.buildUpon()
+                    .appendQueryParameter(ContactsContract.LIMIT_PARAM_KEY, String.valueOf(mLimit))
+                    .build();
+        return contactsUri;
     }
 
     //./adb shell content query --uri content://com.android.contacts/deleted_contacts > deleted_contacts.txt
     private static final String[] DELETED_PROJECTION = new String[]{ContactsContract.DeletedContacts.CONTACT_ID};
+    private static final String[] DELTA_DELETED_PROJECTION = new String[]{ContactsContract.DeletedContacts.CONTACT_ID,
+            ContactsContract.DeletedContacts.CONTACT_DELETED_TIMESTAMP};
 
     private Cursor getDeletedContactsCursorWithSelection(long since) {
         return mResolver.query(
@@ -93,21 +299,68 @@ class ContactsGetter {
 
     }
 
-    private Cursor getContactsCursorWithAdditionalData() {
-        return mResolver.query(ContactsContract.RawContacts.CONTENT_URI, ADDITIONAL_DATA_PROJECTION, null, null, null);
+    private Cursor getContactsCursorWithAdditionalData(ContactIdRestriction restriction) {
+        return mResolver.query(ContactsContract.RawContacts.CONTENT_URI, ADDITIONAL_DATA_PROJECTION, restriction.getSelection(null),
+                restriction.getSelectionArgs(null), null);
     }
 
-    private <T extends ContactData> T getContactData() {
-        if (mContactDataClass == null) {
-            return (T) new ContactData() {
-            };
+    /**
+     * <p>
+     * Restricts data queries to contacts matched by contacts query when only a part of contacts was selected or limited.
+     * </p>
+     * <p>
+     * Contacts are matched by subquery with the same selection, sort order and limit, so restriction doesn't depend
+     * on number of matched contacts.
+     * </p>
+     * <p>
+     * Subquery reads internal view of AOSP provider, if provider doesn't have it ids of matched contacts are queried
+     * through {@link ContactsContract.Contacts#CONTENT_URI} and inlined instead, see {@link ProviderViews}.
+     * </p>
+     */
+    private ContactIdRestriction getSelectionRestriction() {
+        return getSelectionRestriction(ID_KEY);
+    }
+
+    private ContactIdRestriction getSelectionRestriction(String idColumn) {
+        if (mSelection == null && mLimit <= 0)
+            return ContactIdRestriction.NONE;
+        if (!ProviderViews.isSupported(mResolver)) {
+            Cursor idsCursor = mResolver.query(getContactsUri(), new String[]{ContactsContract.Contacts._ID}, mSelection,
+                    mSelectionArgs, mSorting);
+            return new ContactIdRestriction(ProviderViews.getInSelection(idColumn,
+                    ProviderViews.readIds(idsCursor, ContactsContract.Contacts._ID)), null);
         }
-        try {
-            return (T) mContactDataClass.getConstructor().newInstance();
-        } catch (Exception e) {
-            e.printStackTrace();
+        StringBuilder restriction = new StringBuilder(idColumn).append(" IN (SELECT ").append(ContactsContract.Contacts._ID)
+                .append(" FROM ").append(ProviderViews.CONTACTS_VIEW);
+        if (mSelection != null)
+            restriction.append(" WHERE (").append(mSelection).append(')');
+        if (mLimit > 0) {
+            if (mSorting != null)
+                restriction.append(" ORDER BY ").append(mSorting);
+            restriction.append(" LIMIT ").append(mLimit);
+        }
+        return new ContactIdRestriction(restriction.append(')').toString(), mSelectionArgs);
+    }
+
+    /**
+     * Ids are inlined as literals, so list should be small, e.g. batch of {@link LazyFieldsLoader}
+     */
+    private static <T extends ContactData> ContactIdRestriction getContactIdRestriction(List<T> contacts) {
+        StringBuilder restriction = new StringBuilder(ID_KEY).append(" IN (");
+        for (int i = 0; i < contacts.size(); i++) {
+            if (i != 0)
+                restriction.append(',');
+            restriction.append(contacts.get(i).getContactId());
         }
-        return null;
+        return new ContactIdRestriction(restriction.append(')').toString(), null);
+    }
+
+    Context getContext() {
+        return mCtx;
+    }
+
+    <T extends ContactData> T getContactData() {
+        return (T) mContactDataCreator.create();
     }
 
     <T extends ContactData> List<T> getDeletedContacts(long since) {
@@ -127,89 +380,273 @@ class ContactsGetter {
         return result;
     }
 
+    /**
+     * Completes delta with contacts deleted after timestamp, watermark is the latest change seen in both tables
+     */
+    <T extends ContactData> ContactsDelta<T> getDelta(List<T> changedContacts, long since) {
+        long watermark = getLatestModificationDate(changedContacts, since);
+        List<Integer> deletedIds = new ArrayList<>();
+        Cursor deletedCursor = mResolver.query(
+                ContactsContract.DeletedContacts.CONTENT_URI,
+                DELTA_DELETED_PROJECTION,
+                ContactsContract.DeletedContacts.CONTACT_DELETED_TIMESTAMP + " >= ?",
+                new String[]{String.valueOf(since)},
+                ContactsContract.DeletedContacts.CONTACT_ID
+        );
+        if (deletedCursor == null)
+            return new ContactsDelta<>(changedContacts, deletedIds, watermark);
+        int idIndex = deletedCursor.getColumnIndex(ContactsContract.DeletedContacts.CONTACT_ID);
+        int timestampIndex = deletedCursor.getColumnIndex(ContactsContract.DeletedContacts.CONTACT_DELETED_TIMESTAMP);
+        if (isIndexNegative(idIndex, timestampIndex)) {
+            deletedCursor.close();
+            throw new RuntimeException("NO DELETED CONTACT ID COLUMN");
+        }
+        while (deletedCursor.moveToNext()) {
+            deletedIds.add(deletedCursor.getInt(idIndex));
+            watermark = Math.max(watermark, deletedCursor.getLong(timestampIndex));
+        }
+        deletedCursor.close();
+        return new ContactsDelta<>(changedContacts, deletedIds, watermark);
+    }
+
+    static long getLatestModificationDate(List<? extends ContactData> contacts, long since) {
+        long latest = since;
+        for (ContactData contact : contacts)
+            latest = Math.max(latest, contact.getLastModificationDate());
+        return latest;
+    }
+
+    /**
+     * Restricts contacts query to contacts changed at or after timestamp, contacts changed in the same millisecond as
+     * watermark are queried again and deduplicated by id when delta is merged
+     */
+    ContactsGetter setChangedSince(long since) {
+        String changedSelection = ContactsContract.Contacts.CONTACT_LAST_UPDATED_TIMESTAMP + " >= ?";
+        String sinceArg = String.valueOf(since);
+        if (mSelection == null) {
+            mSelection = changedSelection;
+            mSelectionArgs = new String[]{sinceArg};
+        } else {
+            mSelection = "(" + mSelection + ") AND " + changedSelection;
+            String[] selectionArgs = mSelectionArgs == null ? new String[1] : Arrays.copyOf(mSelectionArgs, mSelectionArgs.length + 1);
+            selectionArgs[selectionArgs.length - 1] = sinceArg;
+            mSelectionArgs = selectionArgs;
+        }
+        return this;
+    }
+
+    /**
+     * Resolves lookup key with lookup uri, so keys that changed after contacts were joined or split are still found
+     *
+     * @return id of contact or null if there is no contact for this key
+     */
+    Integer getContactIdByLookupKey(String lookupKey) {
+        Uri lookupUri = Uri.withAppendedPath(ContactsContract.Contacts.CONTENT_LOOKUP_URI, Uri.encode(lookupKey));
+        Cursor cursor = mResolver.query(lookupUri, new String[]{ContactsContract.Contacts._ID}, null, null, null);
+        if (cursor == null)
+            return null;
+        try {
+            int idIndex = cursor.getColumnIndex(ContactsContract.Contacts._ID);
+            return idIndex >= 0 && cursor.moveToFirst() ? cursor.getInt(idIndex) : null;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * <p>
+     * Ids of all contacts changed after timestamp regardless of selection, used to find contacts that left selection
+     * </p>
+     * <p>
+     * Watermark of result covers these contacts as well, otherwise contacts that don't match selection anymore would be
+     * changed after watermark of delta forever
+     * </p>
+     */
+    ChangedContactIds getChangedContactIds(long since) {
+        List<Integer> ids = new ArrayList<>();
+        long watermark = since;
+        Cursor cursor = mResolver.query(ContactsContract.Contacts.CONTENT_URI,
+            new String[]{ContactsContract.Contacts._ID, ContactsContract.Contacts.CONTACT_LAST_UPDATED_TIMESTAMP},
+            ContactsContract.Contacts.CONTACT_LAST_UPDATED_TIMESTAMP + " >= ?", new String[]{String.valueOf(since)}, null);
+        if (cursor == null)
+            return new ChangedContactIds(ids, watermark);
+        int idIndex = cursor.getColumnIndex(ContactsContract.Contacts._ID);
+        int timestampIndex = cursor.getColumnIndex(ContactsContract.Contacts.CONTACT_LAST_UPDATED_TIMESTAMP);
+        while (!isIndexNegative(idIndex, timestampIndex) && cursor.moveToNext()) {
+            ids.add(cursor.getInt(idIndex));
+            watermark = Math.max(watermark, cursor.getLong(timestampIndex));
+        }
+        cursor.close();
+        return new ChangedContactIds(ids, watermark);
+    }
+
     <T extends ContactData> List<T> getContacts() {
+        if (mLoadStrategy == LoadStrategy.MERGE_JOIN && (mSorting == null || mSortingComparator != null))
+            return mergeJoinContacts();
         Cursor mainCursor = getContactsCursorWithSelection(mSorting, mSelection, mSelectionArgs);
-        Cursor additionalDataCursor = getContactsCursorWithAdditionalData();
-        SparseArray<T> contactsSparse = new SparseArray<>();
+        IntObjectMap<T> contactsMap = new IntObjectMap<>();
         List<T> result = new ArrayList<>();
         if (mainCursor == null)
             return result;
-        SparseArray<List<PhoneNumber>> phonesDataMap = mEnabledFields.contains(FieldType.PHONE_NUMBERS) ? getPhoneNumberMap() : new SparseArray<List<PhoneNumber>>();
-        SparseArray<List<Address>> addressDataMap = mEnabledFields.contains(FieldType.ADDRESS) ? getDataMap(getCursorFromContentType(WITH_LABEL_PROJECTION, StructuredPostal.CONTENT_ITEM_TYPE), new WithLabelCreator<Address>() {
-            @Override
-            public Address create(String mainData, int contactId, int labelId, String labelName) {
-                Address address = new Address(mCtx, mainData, labelId);
-                address.setContactId(contactId);
-                return address;
-            }
-        }) : new SparseArray<List<Address>>();
-        SparseArray<List<Email>> emailDataMap = mEnabledFields.contains(FieldType.EMAILS) ? getDataMap(getCursorFromContentType(WITH_LABEL_PROJECTION, CommonDataKinds.Email.CONTENT_ITEM_TYPE), new WithLabelCreator<Email>() {
-            @Override
-            public Email create(String mainData, int contactId, int labelId, String labelName) {
-                Email email;
-                if (labelName != null)
-                    email = new Email(mainData, labelName);
-                else
-                    email = new Email(mCtx, mainData, labelId);
-                email.setContactId(contactId);
-                return email;
-            }
-        }) : new SparseArray<List<Email>>();
-        SparseArray<List<SpecialDate>> specialDateMap = mEnabledFields.contains(FieldType.SPECIAL_DATES) ? getDataMap(getCursorFromContentType(WITH_LABEL_PROJECTION, Event.CONTENT_ITEM_TYPE), new WithLabelCreator<SpecialDate>() {
-            @Override
-            public SpecialDate create(String mainData, int contactId, int labelId, String labelName) {
-                SpecialDate specialData;
-                if (labelName != null)
-                    specialData = new SpecialDate(mainData, labelName);
-                else
-                    specialData = new SpecialDate(mCtx, mainData, labelId);
-                specialData.setContactId(contactId);
-                return specialData;
-            }
-        }) : new SparseArray<List<SpecialDate>>();
-        SparseArray<List<Relation>> relationMap = mEnabledFields.contains(FieldType.RELATIONS) ? getDataMap(getCursorFromContentType(WITH_LABEL_PROJECTION, CommonDataKinds.Relation.CONTENT_ITEM_TYPE), new WithLabelCreator<Relation>() {
-            @Override
-            public Relation create(String mainData, int contactId, int labelId, String labelName) {
-                Relation relation;
-                if (labelName != null)
-                    relation = new Relation(mainData, labelName);
-                else
-                    relation = new Relation(mCtx, mainData, labelId);
-                relation.setContactId(contactId);
-                return relation;
-            }
-        }) : new SparseArray<List<Relation>>();
-        SparseArray<List<IMAddress>> imAddressesDataMap = mEnabledFields.contains(FieldType.IM_ADDRESSES) ? getIMAddressesMap() : new SparseArray<>();
-        SparseArray<List<String>> websitesDataMap = mEnabledFields.contains(FieldType.WEBSITES) ? getWebSitesMap() : new SparseArray<>();
-        SparseArray<String> notesDataMap = mEnabledFields.contains(FieldType.NOTES) ? getStringDataMap(Note.CONTENT_ITEM_TYPE) : new SparseArray<>();
-        SparseArray<String> nicknameDataMap = mEnabledFields.contains(FieldType.NICKNAME) ? getStringDataMap(Nickname.CONTENT_ITEM_TYPE) : new SparseArray<>();
-        SparseArray<String> sipDataMap = mEnabledFields.contains(FieldType.SIP) ? getStringDataMap(SipAddress.CONTENT_ITEM_TYPE) : new SparseArray<>();
-        SparseArray<Organization> organisationDataMap = mEnabledFields.contains(FieldType.ORGANIZATION) ? getOrganizationDataMap() : new SparseArray<>();
-        SparseArray<NameData> nameDataMap = mEnabledFields.contains(FieldType.NAME_DATA) ? getNameDataMap() : new SparseArray<>();
-        SparseArray<List<Group>> groupsDataMap = mEnabledFields.contains(FieldType.GROUPS) ? getGroupsDataMap() : new SparseArray<>();
-
-        int ID_IDX = mainCursor.getColumnIndex(ContactsContract.Contacts._ID);
-        int CONTACT_LAST_UPDATED_TIMESTAMP_IDX = mainCursor.getColumnIndex(ContactsContract.Contacts.CONTACT_LAST_UPDATED_TIMESTAMP);
-        int PHOTO_URI_IDX = mainCursor.getColumnIndex(ContactsContract.Contacts.PHOTO_URI);
-        int LOOKUP_KEY_IDX = mainCursor.getColumnIndex(ContactsContract.Contacts.LOOKUP_KEY);
-        int STARRED_IDX = mainCursor.getColumnIndex(ContactsContract.Contacts.STARRED);
-        int DISPLAY_NAME_IDX = mainCursor.getColumnIndex(ContactsContract.Contacts.DISPLAY_NAME);
-        if (isIndexNegative(ID_IDX, CONTACT_LAST_UPDATED_TIMESTAMP_IDX, PHOTO_URI_IDX, LOOKUP_KEY_IDX, STARRED_IDX, DISPLAY_NAME_IDX)) {
+
+        ContactRowColumns columns = new ContactRowColumns(mainCursor);
+        if (columns.isInvalid()) {
             mainCursor.close();
             return result;
         }
         while (mainCursor.moveToNext()) {
-            int id = mainCursor.getInt(ID_IDX);
-            long date = mainCursor.getLong(CONTACT_LAST_UPDATED_TIMESTAMP_IDX);
-            String photoUriString = mainCursor.getString(PHOTO_URI_IDX);
-            String lookupKey = mainCursor.getString(LOOKUP_KEY_IDX);
-            boolean isFavorite = mainCursor.getInt(STARRED_IDX) == 1;
-            Uri photoUri = photoUriString == null ? Uri.EMPTY : Uri.parse(photoUriString);
-            T data = (T) getContactData()
-                    .setContactId(id)
-                    .setLookupKey(lookupKey)
-                    .setLastModificationDate(date)
-                    .setPhoneList(phonesDataMap.get(id))
+            T data = readContact(mainCursor, columns);
+            contactsMap.put(data.getContactId(), data);
+            result.add(data);
+        }
+        mainCursor.close();
+        if (result.isEmpty())
+            return result;
+        if (mLoadStrategy == LoadStrategy.LAZY) {
+            LazyFieldsLoader loader = new LazyFieldsLoader(getFieldsLoaderGetter(), result);
+            for (T contact : result)
+                contact.setFieldsLoader(loader);
+            return result;
+        }
+
+        ContactIdRestriction restriction = getSelectionRestriction();
+        if (mLoadStrategy == LoadStrategy.PER_FIELD)
+            loadFieldsPerType(result, restriction);
+        else
+            scanDataTable(contactsMap, restriction);
+        bindAccounts(contactsMap, restriction);
+        return result;
+    }
+
+    /**
+     * Getter of {@link LazyFieldsLoader} lives as long as loaded contacts, so it is bound to application context
+     * instead of context of this getter
+     */
+    private ContactsGetter getFieldsLoaderGetter() {
+        return new ContactsGetter(mCtx.getApplicationContext(), new ArrayList<>(mEnabledFields), null, null, null);
+    }
+
+    /**
+     * <p>
+     * Loads fields of given contacts with one data query restricted to their ids, used by {@link LazyFieldsLoader}
+     * </p>
+     * <p>
+     * Rows are bound to new contacts with the same ids, so binding doesn't go through loader of given contacts
+     * </p>
+     *
+     * @param contacts contacts to load, should contain at most {@link #MAX_RESTRICTED_IDS} contacts
+     * @return contacts with loaded fields by their ids
+     */
+    IntObjectMap<ContactData> loadFields(List<? extends ContactData> contacts) {
+        IntObjectMap<ContactData> contactsMap = new IntObjectMap<>(contacts.size());
+        for (ContactData contact : contacts)
+            contactsMap.put(contact.getContactId(), DEFAULT_CONTACT_DATA_CREATOR.create().setContactId(contact.getContactId()));
+        ContactIdRestriction restriction = getContactIdRestriction(contacts);
+        scanDataTable(contactsMap, restriction);
+        bindAccounts(contactsMap, restriction);
+        return contactsMap;
+    }
+
+    private <T extends ContactData> void bindAccounts(IntObjectMap<T> contactsMap, ContactIdRestriction restriction) {
+        Cursor additionalDataCursor = getContactsCursorWithAdditionalData(restriction);
+        if (additionalDataCursor == null)
+            return;
+        AccountRowColumns accountColumns = new AccountRowColumns(additionalDataCursor);
+
+        if (!accountColumns.isInvalid()) {
+            while (additionalDataCursor.moveToNext()) {
+                int id = additionalDataCursor.getInt(accountColumns.contactId);
+                if (id >= 0) {
+                    ContactData relatedContactData = contactsMap.get(id);
+                    if (relatedContactData != null)
+                        bindAccountRow(additionalDataCursor, accountColumns, relatedContactData);
+                }
+            }
+        }
+
+        additionalDataCursor.close();
+    }
+
+    /**
+     * <p>
+     * Opens cursors for streaming contacts one by one.
+     * </p>
+     * <p>
+     * Contacts, data and raw contacts are ordered by contact id, so every contact can be emitted as soon as its rows are consumed.
+     * Data and raw contacts are restricted to selected contacts, so narrow selection doesn't stream whole tables.
+     * </p>
+     */
+    <T extends ContactData> ContactsIterator<T> iterateContacts(List<BaseFilter> filters) {
+        return iterateContacts(getContactsCursorWithSelection(ContactsContract.Contacts._ID + " ASC", mSelection, mSelectionArgs), filters);
+    }
+
+    private <T extends ContactData> ContactsIterator<T> iterateContacts(Cursor contactsCursor, List<BaseFilter> filters) {
+        if (contactsCursor == null)
+            return new ContactsIterator<>(this, null, null, null, new IntObjectMap<Group>(), filters);
+        ContactIdRestriction restriction = getSelectionRestriction();
+        String[] mimeTypes = getEnabledMimeTypes();
+        Cursor dataCursor = mimeTypes.length == 0 ? null : mResolver.query(ContactsContract.Data.CONTENT_URI, DATA_SCAN_PROJECTION,
+                restriction.getSelection(getMimeTypeSelection(mimeTypes.length)), restriction.getSelectionArgs(mimeTypes), ID_KEY + " ASC");
+        Cursor accountsCursor = mResolver.query(ContactsContract.RawContacts.CONTENT_URI, ADDITIONAL_DATA_PROJECTION,
+                restriction.getSelection(null), restriction.getSelectionArgs(null), ContactsContract.RawContacts.CONTACT_ID + " ASC");
+        IntObjectMap<Group> groupMapById = mEnabledFields.contains(FieldType.GROUPS) ? getGroupsMap() : new IntObjectMap<Group>();
+        return new ContactsIterator<>(this, contactsCursor, dataCursor, accountsCursor, groupMapById, filters);
+    }
+
+    <T extends ContactData> T readContact(Cursor cursor, ContactRowColumns columns) {
+        T contact = (T) getContactData().setContactId(cursor.getInt(columns.id));
+        if (columns.lookupKey != -1)
+            contact.setLookupKey(cursor.getString(columns.lookupKey));
+        if (columns.lastUpdatedTimestamp != -1)
+            contact.setLastModificationDate(cursor.getLong(columns.lastUpdatedTimestamp));
+        if (columns.photoUri != -1) {
+            String photoUriString = cursor.getString(columns.photoUri);
+            contact.setPhotoUri(photoUriString == null ? Uri.EMPTY : Uri.parse(photoUriString));
+        }
+        if (columns.starred != -1)
+            contact.setFavorite(cursor.getInt(columns.starred) == 1);
+        if (columns.displayName != -1)
+            contact.setCompositeName(cursor.getString(columns.displayName));
+        return contact;
+    }
+
+    void bindAccountRow(Cursor cursor, AccountRowColumns columns, ContactData contact) {
+        contact.setAccountName(cursor.getString(columns.accountName))
+                .setAccountType(cursor.getString(columns.accountType));
+    }
+
+    private <T extends ContactData> void loadFieldsPerType(List<T> contacts, final ContactIdRestriction restriction) {
+        FutureTask<IntObjectMap<List<PhoneNumber>>> phonesFuture = loadField(FieldType.PHONE_NUMBERS, () -> getPhoneNumberMap(restriction));
+        FutureTask<IntObjectMap<List<Address>>> addressFuture = loadField(FieldType.ADDRESS, () -> getDataMap(getCursorFromContentType(WITH_LABEL_PROJECTION, StructuredPostal.CONTENT_ITEM_TYPE, restriction), mAddressCreator));
+        FutureTask<IntObjectMap<List<Email>>> emailFuture = loadField(FieldType.EMAILS, () -> getDataMap(getCursorFromContentType(WITH_LABEL_PROJECTION, CommonDataKinds.Email.CONTENT_ITEM_TYPE, restriction), mEmailCreator));
+        FutureTask<IntObjectMap<List<SpecialDate>>> specialDateFuture = loadField(FieldType.SPECIAL_DATES, () -> getDataMap(getCursorFromContentType(WITH_LABEL_PROJECTION, Event.CONTENT_ITEM_TYPE, restriction), mSpecialDateCreator));
+        FutureTask<IntObjectMap<List<Relation>>> relationFuture = loadField(FieldType.RELATIONS, () -> getDataMap(getCursorFromContentType(WITH_LABEL_PROJECTION, CommonDataKinds.Relation.CONTENT_ITEM_TYPE, restriction), mRelationCreator));
+        FutureTask<IntObjectMap<List<IMAddress>>> imAddressesFuture = loadField(FieldType.IM_ADDRESSES, () -> getIMAddressesMap(restriction));
+        FutureTask<IntObjectMap<List<String>>> websitesFuture = loadField(FieldType.WEBSITES, () -> getWebSitesMap(restriction));
+        FutureTask<IntObjectMap<String>> notesFuture = loadField(FieldType.NOTES, () -> getStringDataMap(Note.CONTENT_ITEM_TYPE, restriction));
+        FutureTask<IntObjectMap<String>> nicknameFuture = loadField(FieldType.NICKNAME, () -> getStringDataMap(Nickname.CONTENT_ITEM_TYPE, restriction));
+        FutureTask<IntObjectMap<String>> sipFuture = loadField(FieldType.SIP, () -> getStringDataMap(SipAddress.CONTENT_ITEM_TYPE, restriction));
+        FutureTask<IntObjectMap<Organization>> organisationFuture = loadField(FieldType.ORGANIZATION, () -> getOrganizationDataMap(restriction));
+        FutureTask<IntObjectMap<NameData>> nameFuture = loadField(FieldType.NAME_DATA, () -> getNameDataMap(restriction));
+        FutureTask<IntObjectMap<List<Group>>> groupsFuture = loadField(FieldType.GROUPS, () -> getGroupsDataMap(restriction));
+
+        IntObjectMap<List<PhoneNumber>> phonesDataMap = awaitField(phonesFuture);
+        IntObjectMap<List<Address>> addressDataMap = awaitField(addressFuture);
+        IntObjectMap<List<Email>> emailDataMap = awaitField(emailFuture);
+        IntObjectMap<List<SpecialDate>> specialDateMap = awaitField(specialDateFuture);
+        IntObjectMap<List<Relation>> relationMap = awaitField(relationFuture);
+        IntObjectMap<List<IMAddress>> imAddressesDataMap = awaitField(imAddressesFuture);
+        IntObjectMap<List<String>> websitesDataMap = awaitField(websitesFuture);
+        IntObjectMap<String> notesDataMap = awaitField(notesFuture);
+        IntObjectMap<String> nicknameDataMap = awaitField(nicknameFuture);
+        IntObjectMap<String> sipDataMap = awaitField(sipFuture);
+        IntObjectMap<Organization> organisationDataMap = awaitField(organisationFuture);
+        IntObjectMap<NameData> nameDataMap = awaitField(nameFuture);
+        IntObjectMap<List<Group>> groupsDataMap = awaitField(groupsFuture);
+
+        for (T data : contacts) {
+            int id = data.getContactId();
+            data.setPhoneList(phonesDataMap.get(id))
                     .setAddressesList(addressDataMap.get(id))
                     .setEmailList(emailDataMap.get(id))
                     .setWebsitesList(websitesDataMap.get(id))
@@ -221,41 +658,209 @@ class ContactsGetter {
                     .setOrganization(organisationDataMap.get(id))
                     .setSipAddress(sipDataMap.get(id))
                     .setNameData(nameDataMap.get(id))
-                    .setPhotoUri(photoUri)
-                    .setFavorite(isFavorite)
-                    .setGroupList(groupsDataMap.get(id))
-                    .setCompositeName(mainCursor.getString(DISPLAY_NAME_IDX));
-            contactsSparse.put(id, data);
-            result.add(data);
+                    .setGroupList(groupsDataMap.get(id));
         }
-        mainCursor.close();
-        int CONTACT_ID_IDX = additionalDataCursor.getColumnIndex(ContactsContract.RawContacts.CONTACT_ID);
-        int ACCOUNT_TYPE_IDX = additionalDataCursor.getColumnIndex(ContactsContract.RawContacts.ACCOUNT_TYPE);
-        int ACCOUNT_NAME_IDX = additionalDataCursor.getColumnIndex(ContactsContract.RawContacts.ACCOUNT_NAME);
+    }
 
-        if (!isIndexNegative(ACCOUNT_NAME_IDX, ACCOUNT_TYPE_IDX, CONTACT_ID_IDX)) {
-            while (additionalDataCursor.moveToNext()) {
-                int id = additionalDataCursor.getInt(CONTACT_ID_IDX);
-                if (id >= 0) {
-                    ContactData relatedContactData = contactsSparse.get(id);
-                    if (relatedContactData != null) {
-                        String accountType = additionalDataCursor.getString(ACCOUNT_TYPE_IDX);
-                        String accountName = additionalDataCursor.getString(ACCOUNT_NAME_IDX);
-                        relatedContactData.setAccountName(accountName)
-                                .setAccountType(accountType);
-                    }
-                }
-            }
+    /**
+     * <p>
+     * Starts loading of field map, disabled fields resolve to empty map.
+     * </p>
+     * <p>
+     * Loaders run on executor if it is set, otherwise they run immediately on calling thread.
+     * </p>
+     */
+    private <V> FutureTask<IntObjectMap<V>> loadField(FieldType fieldType, Callable<IntObjectMap<V>> loader) {
+        if (!mEnabledFields.contains(fieldType)) {
+            FutureTask<IntObjectMap<V>> empty = new FutureTask<>(IntObjectMap::new);
+            empty.run();
+            return empty;
+        }
+        FutureTask<IntObjectMap<V>> task = new FutureTask<>(loader);
+        if (mExecutor == null)
+            task.run();
+        else
+            mExecutor.execute(task);
+        return task;
+    }
+
+    /**
+     * Field that didn't start yet is loaded on calling thread, so build doesn't deadlock when it runs on thread
+     * of the same bounded executor. Running started task again does nothing
+     */
+    private static <V> IntObjectMap<V> awaitField(FutureTask<IntObjectMap<V>> task) {
+        task.run();
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while loading contacts", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw new IllegalStateException("Failed to load contacts", e.getCause());
         }
+    }
 
-        additionalDataCursor.close();
+    /**
+     * Reads all enabled fields with one query to data table, every row is dispatched by its mimetype
+     */
+    private <T extends ContactData> void scanDataTable(IntObjectMap<T> contactsMap, ContactIdRestriction restriction) {
+        String[] mimeTypes = getEnabledMimeTypes();
+        if (mimeTypes.length == 0)
+            return;
+        IntObjectMap<Group> groupMapById = mEnabledFields.contains(FieldType.GROUPS) ? getGroupsMap() : new IntObjectMap<Group>();
+        Cursor dataCursor = mResolver.query(ContactsContract.Data.CONTENT_URI, DATA_SCAN_PROJECTION,
+                restriction.getSelection(getMimeTypeSelection(mimeTypes.length)), restriction.getSelectionArgs(mimeTypes), null);
+        if (dataCursor == null)
+            return;
+        DataRowColumns columns = new DataRowColumns(dataCursor);
+        if (columns.isInvalid()) {
+            dataCursor.close();
+            return;
+        }
+        while (dataCursor.moveToNext()) {
+            ContactData contact = contactsMap.get(dataCursor.getInt(columns.contactId));
+            if (contact != null)
+                bindDataRow(dataCursor, columns, contact, groupMapById);
+        }
+        dataCursor.close();
+    }
+
+    void bindDataRow(Cursor cursor, DataRowColumns columns, ContactData contact, IntObjectMap<Group> groupMapById) {
+        int id = contact.getContactId();
+        String mimeType = cursor.getString(columns.mimeType);
+        String mainData = cursor.getString(columns.mainData);
+        switch (mimeType) {
+            case Phone.CONTENT_ITEM_TYPE:
+                contact.getPhoneList().add(createPhoneNumber(mainData, id, cursor.getInt(columns.label), cursor.getInt(columns.isPrimary) == 1));
+                break;
+            case StructuredPostal.CONTENT_ITEM_TYPE:
+                contact.getAddressesList().add(mAddressCreator.create(mainData, id, cursor.getInt(columns.label), cursor.getString(columns.customLabel)));
+                break;
+            case CommonDataKinds.Email.CONTENT_ITEM_TYPE:
+                contact.getEmailList().add(mEmailCreator.create(mainData, id, cursor.getInt(columns.label), cursor.getString(columns.customLabel)));
+                break;
+            case Event.CONTENT_ITEM_TYPE:
+                contact.getSpecialDatesList().add(mSpecialDateCreator.create(mainData, id, cursor.getInt(columns.label), cursor.getString(columns.customLabel)));
+                break;
+            case CommonDataKinds.Relation.CONTENT_ITEM_TYPE:
+                contact.getRelationsList().add(mRelationCreator.create(mainData, id, cursor.getInt(columns.label), cursor.getString(columns.customLabel)));
+                break;
+            case Im.CONTENT_ITEM_TYPE:
+                contact.getImAddressesList().add(createImAddress(mainData, cursor.getInt(columns.protocol), cursor.getString(columns.customProtocol)));
+                break;
+            case Website.CONTENT_ITEM_TYPE:
+                contact.getWebsitesList().add(mainData);
+                break;
+            case Note.CONTENT_ITEM_TYPE:
+                contact.setNote(mainData);
+                break;
+            case Nickname.CONTENT_ITEM_TYPE:
+                contact.setNickName(mainData);
+                break;
+            case SipAddress.CONTENT_ITEM_TYPE:
+                contact.setSipAddress(mainData);
+                break;
+            case CONTENT_ITEM_TYPE:
+                contact.setOrganization(new Organization()
+                        .setName(mainData)
+                        .setTitle(cursor.getString(columns.title))
+                        .setDepartment(cursor.getString(columns.department)));
+                break;
+            case StructuredName.CONTENT_ITEM_TYPE:
+                if (contact.getNameData().getFullName().isEmpty())
+                    contact.setNameData(createNameData(cursor, columns.mainData, columns.givenName, columns.familyName, columns.prefix,
+                            columns.middleName, columns.suffix, columns.phoneticGivenName, columns.phoneticMiddleName, columns.phoneticFamilyName));
+                break;
+            case GroupMembership.CONTENT_ITEM_TYPE:
+                contact.getGroupList().add(groupMapById.get(cursor.getInt(columns.mainData)));
+                break;
+        }
+    }
+
+    /**
+     * <p>
+     * Streams contacts, data and raw contacts rows ordered by contact id, so no map from id to contact is built.
+     * </p>
+     * <p>
+     * Limit is applied by subquery in sort order of query, then sort order is restored by {@link #mSortingComparator}.
+     * </p>
+     */
+    private <T extends ContactData> List<T> mergeJoinContacts() {
+        String ordering = ContactsContract.Contacts._ID + " ASC";
+        Cursor contactsCursor;
+        if (mLimit > 0) {
+            ContactIdRestriction restriction = getSelectionRestriction(ContactsContract.Contacts._ID);
+            contactsCursor = mResolver.query(ContactsContract.Contacts.CONTENT_URI, mContactsProjection, restriction.getSelection(null),
+                    restriction.getSelectionArgs(null), ordering);
+        } else {
+            contactsCursor = getContactsCursorWithSelection(ordering, mSelection, mSelectionArgs);
+        }
+        ContactsIterator<T> iterator = iterateContacts(contactsCursor, Collections.<BaseFilter>emptyList());
+        List<T> result = new ArrayList<>();
+        while (iterator.hasNext())
+            result.add(iterator.next());
+        if (mSortingComparator != null)
+            Collections.sort(result, mSortingComparator);
         return result;
     }
 
+    private String[] getEnabledMimeTypes() {
+        List<String> mimeTypes = new ArrayList<>(FieldType.values().length);
+        for (FieldType fieldType : FieldType.values()) {
+            if (mEnabledFields.contains(fieldType))
+                mimeTypes.add(getMimeType(fieldType));
+        }
+        return mimeTypes.toArray(new String[mimeTypes.size()]);
+    }
+
+    private static String getMimeType(FieldType fieldType) {
+        switch (fieldType) {
+            case EMAILS:
+                return CommonDataKinds.Email.CONTENT_ITEM_TYPE;
+            case PHONE_NUMBERS:
+                return Phone.CONTENT_ITEM_TYPE;
+            case ADDRESS:
+                return StructuredPostal.CONTENT_ITEM_TYPE;
+            case WEBSITES:
+                return Website.CONTENT_ITEM_TYPE;
+            case IM_ADDRESSES:
+                return Im.CONTENT_ITEM_TYPE;
+            case SPECIAL_DATES:
+                return Event.CONTENT_ITEM_TYPE;
+            case NOTES:
+                return Note.CONTENT_ITEM_TYPE;
+            case RELATIONS:
+                return CommonDataKinds.Relation.CONTENT_ITEM_TYPE;
+            case NICKNAME:
+                return Nickname.CONTENT_ITEM_TYPE;
+            case ORGANIZATION:
+                return CONTENT_ITEM_TYPE;
+            case SIP:
+                return SipAddress.CONTENT_ITEM_TYPE;
+            case NAME_DATA:
+                return StructuredName.CONTENT_ITEM_TYPE;
+            case GROUPS:
+                return GroupMembership.CONTENT_ITEM_TYPE;
+            default:
+                throw new IllegalArgumentException("Unknown field type " + fieldType);
+        }
+    }
+
+    private static String getMimeTypeSelection(int mimeTypesCount) {
+        StringBuilder selection = new StringBuilder(ContactsContract.Data.MIMETYPE).append(" IN (");
+        for (int i = 0; i < mimeTypesCount; i++) {
+            if (i != 0)
+                selection.append(',');
+            selection.append('?');
+        }
+        return selection.append(')').toString();
+    }
 
-    private SparseArray<List<String>> getWebSitesMap() {
-        SparseArray<List<String>> idSiteMap = new SparseArray<>();
-        Cursor websiteCur = getCursorFromContentType(new String[]{ID_KEY, MAIN_DATA_KEY}, Website.CONTENT_ITEM_TYPE);
+    private IntObjectMap<List<String>> getWebSitesMap(ContactIdRestriction restriction) {
+        IntObjectMap<List<String>> idSiteMap = new IntObjectMap<>();
+        Cursor websiteCur = getCursorFromContentType(new String[]{ID_KEY, MAIN_DATA_KEY}, Website.CONTENT_ITEM_TYPE, restriction);
         if (websiteCur != null) {
             int ID_KEY_IDX = websiteCur.getColumnIndex(ID_KEY);
             int MAIN_DATA_KEY_IDX = websiteCur.getColumnIndex(MAIN_DATA_KEY);
@@ -279,8 +884,8 @@ class ContactsGetter {
         return idSiteMap;
     }
 
-    private SparseArray<Group> getGroupsMap() {
-        SparseArray<Group> idGroupMap = new SparseArray<>();
+    private IntObjectMap<Group> getGroupsMap() {
+        IntObjectMap<Group> idGroupMap = new IntObjectMap<>();
         Cursor groupCursor = mResolver.query(
                 ContactsContract.Groups.CONTENT_URI,
                 new String[]{
@@ -309,10 +914,10 @@ class ContactsGetter {
         return idGroupMap;
     }
 
-    private SparseArray<List<Group>> getGroupsDataMap() {
-        SparseArray<List<Group>> idListGroupMap = new SparseArray<>();
-        SparseArray<Group> groupMapById = getGroupsMap();
-        Cursor groupMembershipCursor = getCursorFromContentType(new String[]{ID_KEY, MAIN_DATA_KEY}, GroupMembership.CONTENT_ITEM_TYPE);
+    private IntObjectMap<List<Group>> getGroupsDataMap(ContactIdRestriction restriction) {
+        IntObjectMap<List<Group>> idListGroupMap = new IntObjectMap<>();
+        IntObjectMap<Group> groupMapById = getGroupsMap();
+        Cursor groupMembershipCursor = getCursorFromContentType(new String[]{ID_KEY, MAIN_DATA_KEY}, GroupMembership.CONTENT_ITEM_TYPE, restriction);
         if (groupMembershipCursor != null) {
             int ID_KEY_IDX = groupMembershipCursor.getColumnIndex(ID_KEY);
             int MAIN_DATA_KEY_IDX = groupMembershipCursor.getColumnIndex(MAIN_DATA_KEY);
@@ -337,10 +942,9 @@ class ContactsGetter {
     }
 
 
-    private SparseArray<NameData> getNameDataMap() {
-        Cursor nameCursor = getCursorFromContentType(new String[]{ID_KEY, StructuredName.DISPLAY_NAME, StructuredName.GIVEN_NAME, StructuredName.PHONETIC_MIDDLE_NAME, StructuredName.PHONETIC_FAMILY_NAME,
-                StructuredName.FAMILY_NAME, StructuredName.PREFIX, StructuredName.MIDDLE_NAME, StructuredName.SUFFIX, StructuredName.PHONETIC_GIVEN_NAME}, StructuredName.CONTENT_ITEM_TYPE);
-        SparseArray<NameData> nameDataSparseArray = new SparseArray<>();
+    private IntObjectMap<NameData> getNameDataMap(ContactIdRestriction restriction) {
+        Cursor nameCursor = getCursorFromContentType(mNameProjection, StructuredName.CONTENT_ITEM_TYPE, restriction);
+        IntObjectMap<NameData> nameDataMap = new IntObjectMap<>();
         if (nameCursor != null) {
             int ID_KEY_INDEX = nameCursor.getColumnIndex(ID_KEY);
             int DISPLAY_NAME_INDEX = nameCursor.getColumnIndex(StructuredName.DISPLAY_NAME);
@@ -352,39 +956,55 @@ class ContactsGetter {
             int PHONETIC_GIVEN_NAME_INDEX = nameCursor.getColumnIndex(StructuredName.PHONETIC_GIVEN_NAME);
             int PHONETIC_MIDDLE_NAME_INDEX = nameCursor.getColumnIndex(StructuredName.PHONETIC_MIDDLE_NAME);
             int PHONETIC_FAMILY_NAME_INDEX = nameCursor.getColumnIndex(StructuredName.PHONETIC_FAMILY_NAME);
-            if (
-                    isIndexNegative(ID_KEY_INDEX, DISPLAY_NAME_INDEX, GIVEN_NAME_INDEX, FAMILY_NAME_INDEX, PREFIX_INDEX,
-                            MIDDLE_NAME_INDEX, SUFFIX_INDEX, PHONETIC_GIVEN_NAME_INDEX, PHONETIC_MIDDLE_NAME_INDEX, PHONETIC_FAMILY_NAME_INDEX)
-            ) {
+            // name columns that were not enabled are missing from cursor
+            if (ID_KEY_INDEX == -1) {
                 nameCursor.close();
-                return nameDataSparseArray;
+                return nameDataMap;
             }
 
             while (nameCursor.moveToNext()) {
                 int id = nameCursor.getInt(ID_KEY_INDEX);
-                if (nameDataSparseArray.get(id) == null)
-                    nameDataSparseArray.put(id, new NameData()
-                            .setFullName(nameCursor.getString(DISPLAY_NAME_INDEX))
-                            .setFirstName(nameCursor.getString(GIVEN_NAME_INDEX))
-                            .setSurname(nameCursor.getString(FAMILY_NAME_INDEX))
-                            .setNamePrefix(nameCursor.getString(PREFIX_INDEX))
-                            .setMiddleName(nameCursor.getString(MIDDLE_NAME_INDEX))
-                            .setNameSuffix(nameCursor.getString(SUFFIX_INDEX))
-                            .setPhoneticFirst(nameCursor.getString(PHONETIC_GIVEN_NAME_INDEX))
-                            .setPhoneticMiddle(nameCursor.getString(PHONETIC_MIDDLE_NAME_INDEX))
-                            .setPhoneticLast(nameCursor.getString(PHONETIC_FAMILY_NAME_INDEX))
-                    );
+                if (nameDataMap.get(id) == null)
+                    nameDataMap.put(id, createNameData(nameCursor, DISPLAY_NAME_INDEX, GIVEN_NAME_INDEX, FAMILY_NAME_INDEX, PREFIX_INDEX,
+                            MIDDLE_NAME_INDEX, SUFFIX_INDEX, PHONETIC_GIVEN_NAME_INDEX, PHONETIC_MIDDLE_NAME_INDEX, PHONETIC_FAMILY_NAME_INDEX));
             }
             nameCursor.close();
         }
 
 
-        return nameDataSparseArray;
+        return nameDataMap;
     }
 
-    private SparseArray<List<IMAddress>> getIMAddressesMap() {
-        SparseArray<List<IMAddress>> idImAddressMap = new SparseArray<>();
-        Cursor cur = getCursorFromContentType(new String[]{ID_KEY, MAIN_DATA_KEY, Im.PROTOCOL, Im.CUSTOM_PROTOCOL}, Im.CONTENT_ITEM_TYPE);
+    /**
+     * Parts with -1 index are left empty
+     */
+    private NameData createNameData(Cursor cursor, int displayNameIdx, int givenNameIdx, int familyNameIdx, int prefixIdx, int middleNameIdx,
+                                    int suffixIdx, int phoneticGivenNameIdx, int phoneticMiddleNameIdx, int phoneticFamilyNameIdx) {
+        NameData nameData = new NameData();
+        if (displayNameIdx != -1)
+            nameData.setFullName(cursor.getString(displayNameIdx));
+        if (givenNameIdx != -1)
+            nameData.setFirstName(cursor.getString(givenNameIdx));
+        if (familyNameIdx != -1)
+            nameData.setSurname(cursor.getString(familyNameIdx));
+        if (prefixIdx != -1)
+            nameData.setNamePrefix(cursor.getString(prefixIdx));
+        if (middleNameIdx != -1)
+            nameData.setMiddleName(cursor.getString(middleNameIdx));
+        if (suffixIdx != -1)
+            nameData.setNameSuffix(cursor.getString(suffixIdx));
+        if (phoneticGivenNameIdx != -1)
+            nameData.setPhoneticFirst(cursor.getString(phoneticGivenNameIdx));
+        if (phoneticMiddleNameIdx != -1)
+            nameData.setPhoneticMiddle(cursor.getString(phoneticMiddleNameIdx));
+        if (phoneticFamilyNameIdx != -1)
+            nameData.setPhoneticLast(cursor.getString(phoneticFamilyNameIdx));
+        return nameData;
+    }
+
+    private IntObjectMap<List<IMAddress>> getIMAddressesMap(ContactIdRestriction restriction) {
+        IntObjectMap<List<IMAddress>> idImAddressMap = new IntObjectMap<>();
+        Cursor cur = getCursorFromContentType(new String[]{ID_KEY, MAIN_DATA_KEY, Im.PROTOCOL, Im.CUSTOM_PROTOCOL}, Im.CONTENT_ITEM_TYPE, restriction);
         if (cur != null) {
             int ID_KEY_INDEX = cur.getColumnIndex(ID_KEY);
             int MAIN_DATA_KEY_INDEX = cur.getColumnIndex(MAIN_DATA_KEY);
@@ -399,11 +1019,7 @@ class ContactsGetter {
                 String data = cur.getString(MAIN_DATA_KEY_INDEX);
                 int labelId = cur.getInt(PROTOCOL_INDEX);
                 String customLabel = cur.getString(CUSTOM_PROTOCOL_INDEX);
-                IMAddress current;
-                if (customLabel == null)
-                    current = new IMAddress(mCtx, data, labelId);
-                else
-                    current = new IMAddress(data, customLabel);
+                IMAddress current = createImAddress(data, labelId, customLabel);
                 List<IMAddress> currentWebsiteList = idImAddressMap.get(id);
                 if (currentWebsiteList == null) {
                     currentWebsiteList = new ArrayList<>();
@@ -416,9 +1032,16 @@ class ContactsGetter {
         return idImAddressMap;
     }
 
-    private SparseArray<List<PhoneNumber>> getPhoneNumberMap() {
-        Cursor phoneCursor = getCursorFromContentType(new String[]{ID_KEY, MAIN_DATA_KEY, LABEL_DATA_KEY, CUSTOM_LABEL_DATA_KEY, ContactsContract.Data.IS_PRIMARY}, Phone.CONTENT_ITEM_TYPE);
-        SparseArray<List<PhoneNumber>> dataSparseArray = new SparseArray<>();
+    private IMAddress createImAddress(String data, int labelId, String customLabel) {
+        if (customLabel == null)
+            return new IMAddress(mCtx, data, labelId);
+        else
+            return new IMAddress(data, customLabel);
+    }
+
+    private IntObjectMap<List<PhoneNumber>> getPhoneNumberMap(ContactIdRestriction restriction) {
+        Cursor phoneCursor = getCursorFromContentType(new String[]{ID_KEY, MAIN_DATA_KEY, LABEL_DATA_KEY, CUSTOM_LABEL_DATA_KEY, ContactsContract.Data.IS_PRIMARY}, Phone.CONTENT_ITEM_TYPE, restriction);
+        IntObjectMap<List<PhoneNumber>> dataMap = new IntObjectMap<>();
         if (phoneCursor != null) {
             int ID_KEY_INDEX = phoneCursor.getColumnIndex(ID_KEY);
             int MAIN_DATA_KEY_INDEX = phoneCursor.getColumnIndex(MAIN_DATA_KEY);
@@ -426,32 +1049,56 @@ class ContactsGetter {
             int IS_PRIMARY_INDEX = phoneCursor.getColumnIndex(ContactsContract.Data.IS_PRIMARY);
             if (isIndexNegative(ID_KEY_INDEX, MAIN_DATA_KEY_INDEX, LABEL_DATA_KEY_INDEX, IS_PRIMARY_INDEX)) {
                 phoneCursor.close();
-                return dataSparseArray;
+                return dataMap;
             }
             while (phoneCursor.moveToNext()) {
                 int id = phoneCursor.getInt(ID_KEY_INDEX);
                 String data = phoneCursor.getString(MAIN_DATA_KEY_INDEX);
                 int labelId = phoneCursor.getInt(LABEL_DATA_KEY_INDEX);
                 boolean isPrimary = phoneCursor.getInt(IS_PRIMARY_INDEX) == 1;
-                PhoneNumber number;
-                number = new PhoneNumber(mCtx, data, labelId);
-                number.setContactId(id);
-                number.setPrimary(isPrimary);
-                List<PhoneNumber> currentDataList = dataSparseArray.get(id);
+                PhoneNumber number = createPhoneNumber(data, id, labelId, isPrimary);
+                List<PhoneNumber> currentDataList = dataMap.get(id);
                 if (currentDataList == null) {
                     currentDataList = new ArrayList<>();
                     currentDataList.add(number);
-                    dataSparseArray.put(id, currentDataList);
+                    dataMap.put(id, currentDataList);
                 } else currentDataList.add(number);
             }
             phoneCursor.close();
         }
-        return dataSparseArray;
+        return dataMap;
+    }
+
+    /**
+     * Indexes phone rows directly, no contact objects are created
+     */
+    PhoneIndex getPhoneIndex() {
+        PhoneIndex phoneIndex = new PhoneIndex();
+        Cursor phoneCursor = getCursorFromContentType(new String[]{ID_KEY, MAIN_DATA_KEY}, Phone.CONTENT_ITEM_TYPE, ContactIdRestriction.NONE);
+        if (phoneCursor == null)
+            return phoneIndex;
+        int idIndex = phoneCursor.getColumnIndex(ID_KEY);
+        int numberIndex = phoneCursor.getColumnIndex(MAIN_DATA_KEY);
+        if (isIndexNegative(idIndex, numberIndex)) {
+            phoneCursor.close();
+            return phoneIndex;
+        }
+        while (phoneCursor.moveToNext())
+            phoneIndex.add(phoneCursor.getInt(idIndex), phoneCursor.getString(numberIndex));
+        phoneCursor.close();
+        return phoneIndex;
+    }
+
+    private PhoneNumber createPhoneNumber(String data, int contactId, int labelId, boolean isPrimary) {
+        PhoneNumber number = new PhoneNumber(mCtx, data, labelId);
+        number.setContactId(contactId);
+        number.setPrimary(isPrimary);
+        return number;
     }
 
-    private SparseArray<String> getStringDataMap(String contentType) {
-        SparseArray<String> idNoteMap = new SparseArray<>();
-        Cursor noteCur = getCursorFromContentType(new String[]{ID_KEY, MAIN_DATA_KEY}, contentType);
+    private IntObjectMap<String> getStringDataMap(String contentType, ContactIdRestriction restriction) {
+        IntObjectMap<String> idNoteMap = new IntObjectMap<>();
+        Cursor noteCur = getCursorFromContentType(new String[]{ID_KEY, MAIN_DATA_KEY}, contentType, restriction);
         if (noteCur != null) {
             int ID_KEY_INDEX = noteCur.getColumnIndex(ID_KEY);
             int MAIN_DATA_KEY_INDEX = noteCur.getColumnIndex(MAIN_DATA_KEY);
@@ -469,9 +1116,9 @@ class ContactsGetter {
         return idNoteMap;
     }
 
-    private SparseArray<Organization> getOrganizationDataMap() {
-        SparseArray<Organization> idOrganizationMap = new SparseArray<>();
-        Cursor noteCur = getCursorFromContentType(new String[]{ID_KEY, MAIN_DATA_KEY, TITLE, DEPARTMENT}, CONTENT_ITEM_TYPE);
+    private IntObjectMap<Organization> getOrganizationDataMap(ContactIdRestriction restriction) {
+        IntObjectMap<Organization> idOrganizationMap = new IntObjectMap<>();
+        Cursor noteCur = getCursorFromContentType(new String[]{ID_KEY, MAIN_DATA_KEY, TITLE, DEPARTMENT}, CONTENT_ITEM_TYPE, restriction);
         if (noteCur != null) {
             int ID_KEY_INDEX = noteCur.getColumnIndex(ID_KEY);
             int MAIN_DATA_KEY_INDEX = noteCur.getColumnIndex(MAIN_DATA_KEY);
@@ -497,8 +1144,8 @@ class ContactsGetter {
     }
 
 
-    private <T extends WithLabel> SparseArray<List<T>> getDataMap(Cursor dataCursor, WithLabelCreator<T> creator) {
-        SparseArray<List<T>> dataSparseArray = new SparseArray<>();
+    private <T extends WithLabel> IntObjectMap<List<T>> getDataMap(Cursor dataCursor, WithLabelCreator<T> creator) {
+        IntObjectMap<List<T>> dataMap = new IntObjectMap<>();
         if (dataCursor != null) {
             int ID_KEY_INDEX = dataCursor.getColumnIndex(ID_KEY);
             int MAIN_DATA_KEY_INDEX = dataCursor.getColumnIndex(MAIN_DATA_KEY);
@@ -507,7 +1154,7 @@ class ContactsGetter {
 
             if (isIndexNegative(ID_KEY_INDEX, MAIN_DATA_KEY_INDEX, LABEL_DATA_KEY_INDEX, CUSTOM_LABEL_DATA_KEY_INDEX)) {
                 dataCursor.close();
-                return dataSparseArray;
+                return dataMap;
             }
 
             while (dataCursor.moveToNext()) {
@@ -516,30 +1163,181 @@ class ContactsGetter {
                 int labelId = dataCursor.getInt(LABEL_DATA_KEY_INDEX);
                 String customLabel = dataCursor.getString(CUSTOM_LABEL_DATA_KEY_INDEX);
                 T current = creator.create(data, id, labelId, customLabel);
-                List<T> currentDataList = dataSparseArray.get(id);
+                List<T> currentDataList = dataMap.get(id);
                 if (currentDataList == null) {
                     currentDataList = new ArrayList<>();
                     currentDataList.add(current);
-                    dataSparseArray.put(id, currentDataList);
+                    dataMap.put(id, currentDataList);
                 } else currentDataList.add(current);
             }
             dataCursor.close();
         }
-        return dataSparseArray;
+        return dataMap;
     }
 
-    private Cursor getCursorFromContentType(String[] projection, String contentType) {
+    private Cursor getCursorFromContentType(String[] projection, String contentType, ContactIdRestriction restriction) {
         String orgWhere = ContactsContract.Data.MIMETYPE + " = ?";
         String[] orgWhereParams = new String[]{contentType};
         return mResolver.query(ContactsContract.Data.CONTENT_URI,
-                projection, orgWhere, orgWhereParams, null);
+                projection, restriction.getSelection(orgWhere), restriction.getSelectionArgs(orgWhereParams), null);
     }
 
     interface WithLabelCreator<T extends WithLabel> {
         T create(String mainData, int contactId, int labelId, String labelName);
     }
 
-    private Boolean isIndexNegative(int... index) {
+    /**
+     * <p>
+     * Restricts queries of data and raw contacts to rows of contacts matched by contacts query.
+     * </p>
+     * <p>
+     * Restriction is passed to every query instead of being kept in getter, so lazy loads and running queries
+     * of the same getter don't share it.
+     * </p>
+     */
+    static final class ContactIdRestriction {
+        static final ContactIdRestriction NONE = new ContactIdRestriction(null, null);
+        private final String mSelection;
+        private final String[] mSelectionArgs;
+
+        ContactIdRestriction(String selection, String[] selectionArgs) {
+            this.mSelection = selection;
+            this.mSelectionArgs = selectionArgs;
+        }
+
+        String getSelection(String selection) {
+            if (mSelection == null)
+                return selection;
+            if (selection == null)
+                return mSelection;
+            return selection + " AND " + mSelection;
+        }
+
+        /**
+         * @return arguments of selection followed by arguments of restriction
+         */
+        String[] getSelectionArgs(String[] selectionArgs) {
+            if (mSelectionArgs == null || mSelectionArgs.length == 0)
+                return selectionArgs;
+            if (selectionArgs == null || selectionArgs.length == 0)
+                return mSelectionArgs;
+            String[] args = Arrays.copyOf(selectionArgs, selectionArgs.length + mSelectionArgs.length);
+            System.arraycopy(mSelectionArgs, 0, args, selectionArgs.length, mSelectionArgs.length);
+            return args;
+        }
+    }
+
+    private static Boolean isIndexNegative(int... index) {
         return Arrays.stream(index).anyMatch(idx -> idx == -1);
     }
+
+    /**
+     * Column indexes of cursor with {@link #CONTACTS_PROJECTION}, columns excluded by {@link #setContactColumns(EnumSet)} are -1
+     */
+    static class ContactRowColumns {
+        final int id;
+        final int lastUpdatedTimestamp;
+        final int photoUri;
+        final int lookupKey;
+        final int starred;
+        final int displayName;
+
+        ContactRowColumns(Cursor cursor) {
+            id = cursor.getColumnIndex(ContactsContract.Contacts._ID);
+            lastUpdatedTimestamp = cursor.getColumnIndex(ContactsContract.Contacts.CONTACT_LAST_UPDATED_TIMESTAMP);
+            photoUri = cursor.getColumnIndex(ContactsContract.Contacts.PHOTO_URI);
+            lookupKey = cursor.getColumnIndex(ContactsContract.Contacts.LOOKUP_KEY);
+            starred = cursor.getColumnIndex(ContactsContract.Contacts.STARRED);
+            displayName = cursor.getColumnIndex(ContactsContract.Contacts.DISPLAY_NAME);
+        }
+
+        boolean isInvalid() {
+            return id == -1;
+        }
+    }
+
+    /**
+     * Result of {@link #getChangedContactIds(long)}
+     */
+    static class ChangedContactIds {
+        static final ChangedContactIds EMPTY = new ChangedContactIds(Collections.<Integer>emptyList(), 0);
+
+        final List<Integer> ids;
+        // latest change timestamp of contacts with these ids
+        final long watermark;
+
+        ChangedContactIds(List<Integer> ids, long watermark) {
+            this.ids = ids;
+            this.watermark = watermark;
+        }
+    }
+
+    /**
+     * Column indexes of cursor with {@link #ADDITIONAL_DATA_PROJECTION}
+     */
+    static class AccountRowColumns {
+        final int contactId;
+        final int accountType;
+        final int accountName;
+
+        AccountRowColumns(Cursor cursor) {
+            contactId = cursor.getColumnIndex(ContactsContract.RawContacts.CONTACT_ID);
+            accountType = cursor.getColumnIndex(ContactsContract.RawContacts.ACCOUNT_TYPE);
+            accountName = cursor.getColumnIndex(ContactsContract.RawContacts.ACCOUNT_NAME);
+        }
+
+        boolean isInvalid() {
+            return isIndexNegative(contactId, accountType, accountName);
+        }
+    }
+
+    /**
+     * Column indexes of cursor with {@link #DATA_SCAN_PROJECTION}
+     */
+    static class DataRowColumns {
+        final int contactId;
+        final int mimeType;
+        final int isPrimary;
+        final int mainData;
+        final int label;
+        final int customLabel;
+        final int protocol;
+        final int customProtocol;
+        final int title;
+        final int department;
+        final int givenName;
+        final int familyName;
+        final int prefix;
+        final int middleName;
+        final int suffix;
+        final int phoneticGivenName;
+        final int phoneticMiddleName;
+        final int phoneticFamilyName;
+
+        DataRowColumns(Cursor cursor) {
+            contactId = cursor.getColumnIndex(ID_KEY);
+            mimeType = cursor.getColumnIndex(ContactsContract.Data.MIMETYPE);
+            isPrimary = cursor.getColumnIndex(ContactsContract.Data.IS_PRIMARY);
+            mainData = cursor.getColumnIndex(MAIN_DATA_KEY);
+            label = cursor.getColumnIndex(LABEL_DATA_KEY);
+            customLabel = cursor.getColumnIndex(CUSTOM_LABEL_DATA_KEY);
+            protocol = cursor.getColumnIndex(Im.PROTOCOL);
+            customProtocol = cursor.getColumnIndex(Im.CUSTOM_PROTOCOL);
+            title = cursor.getColumnIndex(TITLE);
+            department = cursor.getColumnIndex(DEPARTMENT);
+            givenName = cursor.getColumnIndex(StructuredName.GIVEN_NAME);
+            familyName = cursor.getColumnIndex(StructuredName.FAMILY_NAME);
+            prefix = cursor.getColumnIndex(StructuredName.PREFIX);
+            middleName = cursor.getColumnIndex(StructuredName.MIDDLE_NAME);
+            suffix = cursor.getColumnIndex(StructuredName.SUFFIX);
+            phoneticGivenName = cursor.getColumnIndex(StructuredName.PHONETIC_GIVEN_NAME);
+            phoneticMiddleName = cursor.getColumnIndex(StructuredName.PHONETIC_MIDDLE_NAME);
+            phoneticFamilyName = cursor.getColumnIndex(StructuredName.PHONETIC_FAMILY_NAME);
+        }
+
+        boolean isInvalid() {
+            return isIndexNegative(contactId, mimeType, isPrimary, mainData, label, customLabel, protocol, customProtocol, title, department,
+                    givenName, familyName, prefix, middleName, suffix, phoneticGivenName, phoneticMiddleName, phoneticFamilyName);
+        }
+    }
 }
\ No newline at end of file
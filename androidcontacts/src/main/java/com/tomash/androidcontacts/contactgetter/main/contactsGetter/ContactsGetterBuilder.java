@@ -1,25 +1,63 @@
 package com.tomash.androidcontacts.contactgetter.main.contactsGetter;
 
 import android.content.Context;
+import android.os.Build;
 import android.provider.ContactsContract;
 import com.tomash.androidcontacts.contactgetter.entity.ContactData;
 import com.tomash.androidcontacts.contactgetter.interfaces.BaseFilter;
+import com.tomash.androidcontacts.contactgetter.interfaces.ContactDataCreator;
+import com.tomash.androidcontacts.contactgetter.interfaces.FieldsLoader;
+import com.tomash.androidcontacts.contactgetter.interfaces.ProviderPredicate;
+import com.tomash.androidcontacts.contactgetter.main.ContactColumn;
 import com.tomash.androidcontacts.contactgetter.main.FieldType;
+import com.tomash.androidcontacts.contactgetter.main.LoadStrategy;
+import com.tomash.androidcontacts.contactgetter.main.NameColumn;
 import com.tomash.androidcontacts.contactgetter.main.Sorting;
+import com.tomash.androidcontacts.contactgetter.main.phoneIndex.PhoneIndex;
+import com.tomash.androidcontacts.contactgetter.main.search.ContactsSearchIndex;
 import com.tomash.androidcontacts.contactgetter.utils.FilterUtils;
+import com.tomash.androidcontacts.contactgetter.utils.IntObjectMap;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Iterator;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.FutureTask;
 
 public class ContactsGetterBuilder {
+    private static final int PARALLEL_FILTER_THRESHOLD = 5000;
+    private static final long IDLE_THREAD_KEEP_ALIVE_SECONDS = 30;
+    // default SQLITE_MAX_VARIABLE_NUMBER of old SQLite versions
+    private static final int MAX_SELECTION_ARGS = 999;
     private Context mCtx;
     private String mSortOrder = Sorting.BY_DISPLAY_NAME_ASC.getSorting();
+    private Sorting mSorting = Sorting.BY_DISPLAY_NAME_ASC;
     private StringBuilder mSelectionBuilder = new StringBuilder();
     private List<String> mParamsList = new ArrayList<>(2);
     private List<BaseFilter> mFilterList = new ArrayList<>(8);
+    private List<CandidateLookup> mCandidateLookups = new ArrayList<>(2);
     private List<FieldType> mEnabledFields = new ArrayList<>(8);
+    private LoadStrategy mLoadStrategy = LoadStrategy.PER_FIELD;
+    private EnumSet<ContactColumn> mContactColumns = EnumSet.allOf(ContactColumn.class);
+    private EnumSet<NameColumn> mNameColumns = EnumSet.allOf(NameColumn.class);
+    private Executor mExecutor;
+    private int mParallelism = 1;
+    private ThreadPoolExecutor mParallelExecutor;
+    private File mSnapshotFile;
 
     public ContactsGetterBuilder(Context ctx) {
         mCtx = ctx;
@@ -40,6 +78,7 @@ public class ContactsGetterBuilder {
      */
     public ContactsGetterBuilder setSortOrder(Sorting sortOrder) {
         this.mSortOrder = sortOrder.getSorting();
+        this.mSorting = sortOrder;
         return this;
     }
 
@@ -58,6 +97,7 @@ public class ContactsGetterBuilder {
      */
     public ContactsGetterBuilder setSortOrder(String sortOrder) {
         this.mSortOrder = sortOrder;
+        this.mSorting = null;
         return this;
     }
 
@@ -125,22 +165,34 @@ public class ContactsGetterBuilder {
     }
 
     /**
+     * <p>
      * Searches for contacts that contains this number sequence
+     * </p>
+     * <p>
+     * Candidates are found by phone rows of provider, so only contacts with similar numbers are loaded
+     * </p>
      *
      * @param number number sequence to search for
      */
     public ContactsGetterBuilder withPhoneLike(final String number) {
         mFilterList.add(FilterUtils.withPhoneLikeFilter(number));
+        mCandidateLookups.add(CandidateLookup.byPhoneLike(number));
         return onlyWithPhones();
     }
 
     /**
+     * <p>
      * Searches for contacts with this number
+     * </p>
+     * <p>
+     * Candidates are found by phone lookup of provider, so only contacts with this number are loaded
+     * </p>
      *
      * @param number number to search for
      */
     public ContactsGetterBuilder withPhone(final String number) {
         mFilterList.add(FilterUtils.withPhoneFilter(number));
+        mCandidateLookups.add(CandidateLookup.byPhone(number));
         return onlyWithPhones();
     }
 
@@ -193,17 +245,108 @@ public class ContactsGetterBuilder {
     }
 
 
+    /**
+     * @return copy of filters ordered by cost, so contacts are rejected by cheapest filters first
+     */
+    private List<BaseFilter> getOrderedFilters() {
+        List<BaseFilter> filters = new ArrayList<>(mFilterList);
+        Collections.sort(filters, (first, second) -> first.getFilterCost() - second.getFilterCost());
+        return filters;
+    }
+
+    /**
+     * <p>
+     * Checks all filters for every contact in one pass and compacts passed contacts in place, so filtering takes linear time
+     * </p>
+     * <p>
+     * Big lists are checked in chunks concurrently on executor or threads of parallelism if they are set, otherwise
+     * on calling thread
+     * </p>
+     */
     private <T extends ContactData> List<T> applyFilters(List<T> contactList) {
-        for (BaseFilter filter : mFilterList) {
-            for (Iterator<T> iterator = contactList.iterator(); iterator.hasNext(); ) {
-                ContactData contact = iterator.next();
-                if (!filter.passedFilter(contact))
-                    iterator.remove();
-            }
+        if (mFilterList.isEmpty() || contactList.isEmpty())
+            return contactList;
+        List<BaseFilter> filters = getOrderedFilters();
+        // filters read fields, so lazy contacts are loaded in big batches instead of one read ahead batch per miss
+        if (mLoadStrategy == LoadStrategy.LAZY)
+            loadFields(contactList);
+        boolean[] passed = new boolean[contactList.size()];
+        Executor executor = contactList.size() >= PARALLEL_FILTER_THRESHOLD ? getFilterExecutor() : null;
+        if (executor != null)
+            checkFiltersConcurrently(contactList, filters, passed, executor, getFilterParallelism());
+        else
+            checkFilters(contactList, filters, passed, 0, contactList.size());
+        int size = 0;
+        for (int i = 0; i < passed.length; i++) {
+            if (passed[i])
+                contactList.set(size++, contactList.get(i));
         }
+        contactList.subList(size, contactList.size()).clear();
         return contactList;
     }
 
+    private static void checkFilters(List<? extends ContactData> contacts, List<BaseFilter> filters, boolean[] passed, int from, int to) {
+        for (int i = from; i < to; i++)
+            passed[i] = ContactsIterator.passedFilters(contacts.get(i), filters);
+    }
+
+    /**
+     * Filters are checked concurrently only when caller opted in with executor or parallelism, as only then they are
+     * required to be thread safe
+     *
+     * @return executor to filter big lists on, null if they should be filtered on calling thread
+     */
+    private Executor getFilterExecutor() {
+        if (mExecutor != null)
+            return mExecutor;
+        if (mParallelism > 1)
+            return getParallelExecutor();
+        return null;
+    }
+
+    /**
+     * Parallelism of custom executor is unknown, so it is taken from {@link #setParallelism(int)} or number of processors
+     */
+    private int getFilterParallelism() {
+        return mParallelism > 1 ? mParallelism : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Contacts are split into one chunk per thread of executor, first chunk is checked by calling thread
+     */
+    private static void checkFiltersConcurrently(final List<? extends ContactData> contacts, final List<BaseFilter> filters,
+                                                 final boolean[] passed, Executor executor, int parallelism) {
+        int chunkCount = Math.max(parallelism, 1);
+        int chunkSize = (contacts.size() + chunkCount - 1) / chunkCount;
+        try {
+            List<FutureTask<Void>> tasks = new ArrayList<>(chunkCount);
+            for (int from = chunkSize; from < contacts.size(); from += chunkSize) {
+                final int chunkFrom = from;
+                final int chunkTo = Math.min(from + chunkSize, contacts.size());
+                FutureTask<Void> task = new FutureTask<>(() -> {
+                    checkFilters(contacts, filters, passed, chunkFrom, chunkTo);
+                    return null;
+                });
+                tasks.add(task);
+                executor.execute(task);
+            }
+            checkFilters(contacts, filters, passed, 0, Math.min(chunkSize, contacts.size()));
+            // chunks that didn't start yet are checked by calling thread, so build on thread of the same bounded
+            // executor doesn't deadlock
+            for (FutureTask<Void> task : tasks) {
+                task.run();
+                task.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while filtering contacts", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw new IllegalStateException("Failed to filter contacts", e.getCause());
+        }
+    }
+
     /**
      * <p>
      * Applies custom filter to query on contacts list
@@ -211,6 +354,13 @@ public class ContactsGetterBuilder {
      * <p>
      * Additional filters and example implementations could be found here {@link FilterUtils}
      * </p>
+     * <p>
+     * If filter describes itself with {@link BaseFilter#getProviderPredicate()} only contacts matching predicate are queried
+     * </p>
+     * <p>
+     * Filter should be thread safe if {@link #setExecutor(Executor)} or {@link #setParallelism(int)} is used, big lists are
+     * filtered concurrently then. Otherwise it is always called on thread of build
+     * </p>
      *
      * @param filter filter to apply
      */
@@ -247,13 +397,255 @@ public class ContactsGetterBuilder {
         return this;
     }
 
-    private ContactsGetter initGetter() {
+    /**
+     * <p>
+     * Sets strategy used to load enabled fields
+     * </p>
+     * <p>
+     * Strategies could be found here {@link LoadStrategy}
+     * </p>
+     * <p>
+     * By default every field is queried separately
+     * </p>
+     *
+     * @param loadStrategy strategy to load fields with
+     */
+    public ContactsGetterBuilder setLoadStrategy(LoadStrategy loadStrategy) {
+        this.mLoadStrategy = loadStrategy;
+        return this;
+    }
+
+    /**
+     * <p>
+     * Sets columns queried from contacts table, contact id is always queried
+     * </p>
+     * <p>
+     * Values of other columns are left default, e.g. only {@link ContactColumn#DISPLAY_NAME} and {@link ContactColumn#PHOTO_URI}
+     * are enough for simple list. Smaller projection keeps more rows in one cursor window
+     * </p>
+     * <p>
+     * Note : columns needed by pages, snapshots and deltas are queried even if they are not set
+     * </p>
+     * <p>
+     * By default all columns are queried
+     * </p>
+     *
+     * @param columns columns to query
+     */
+    public ContactsGetterBuilder setContactColumns(ContactColumn... columns) {
+        this.mContactColumns = columns.length == 0 ? EnumSet.noneOf(ContactColumn.class) : EnumSet.copyOf(Arrays.asList(columns));
+        return this;
+    }
+
+    /**
+     * <p>
+     * Sets parts of name data queried with {@link FieldType#NAME_DATA}, other parts are left empty
+     * </p>
+     * <p>
+     * Note : projection is reduced only with {@link LoadStrategy#PER_FIELD}, other strategies query data columns
+     * of all fields at once, so all parts are loaded there
+     * </p>
+     * <p>
+     * By default all parts are queried
+     * </p>
+     *
+     * @param columns parts of name to query
+     */
+    public ContactsGetterBuilder setNameColumns(NameColumn... columns) {
+        this.mNameColumns = columns.length == 0 ? EnumSet.noneOf(NameColumn.class) : EnumSet.copyOf(Arrays.asList(columns));
+        return this;
+    }
+
+    /**
+     * <p>
+     * Sets executor used to query fields concurrently with {@link LoadStrategy#PER_FIELD}
+     * </p>
+     * <p>
+     * Results of all fields are joined before contacts are returned
+     * </p>
+     * <p>
+     * Big lists are filtered on this executor too, so custom filters should be thread safe
+     * </p>
+     *
+     * @param executor executor to run field queries on
+     */
+    public ContactsGetterBuilder setExecutor(Executor executor) {
+        this.mExecutor = executor;
+        return this;
+    }
+
+    /**
+     * <p>
+     * Sets how many fields could be queried concurrently with {@link LoadStrategy#PER_FIELD}
+     * </p>
+     * <p>
+     * Threads are created on first build and reused by following builds of this builder, idle threads are stopped after
+     * 30 seconds. Ignored if executor is set with {@link #setExecutor(Executor)}
+     * </p>
+     * <p>
+     * By default fields are queried one after another
+     * </p>
+     * <p>
+     * Big lists are filtered with the same number of threads, so custom filters should be thread safe
+     * </p>
+     *
+     * @param parallelism max number of concurrent queries
+     */
+    public synchronized ContactsGetterBuilder setParallelism(int parallelism) {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("Parallelism should be positive");
+        if (mParallelExecutor != null && parallelism != mParallelism) {
+            mParallelExecutor.shutdown();
+            mParallelExecutor = null;
+        }
+        this.mParallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * <p>
+     * Sets file to keep snapshot of loaded contacts between launches
+     * </p>
+     * <p>
+     * When snapshot exists buildList reads it and queries only contacts changed or deleted after it was written,
+     * use {@link #buildListFromSnapshot()} to show contacts before provider is queried at all
+     * </p>
+     * <p>
+     * Snapshot is bound to fields, selection and sort order, snapshot of other query is ignored and overwritten
+     * </p>
+     * <p>
+     * Note : changes that don't update contact timestamp (e.g. renamed group) are not picked up from snapshot
+     * </p>
+     * <p>
+     * AVAILABLE FROM 18 API
+     * </p>
+     *
+     * @param snapshotFile file to store snapshot in, e.g. in {@link Context#getFilesDir()}
+     */
+    public ContactsGetterBuilder setSnapshotFile(File snapshotFile) {
+        this.mSnapshotFile = snapshotFile;
+        return this;
+    }
+
+    private <T extends ContactData> List<T> getContacts(ContactsGetter getter) {
+        if (mSorting != null)
+            getter.setSortingComparator(getSortingComparator());
+        if (mExecutor != null || mParallelism == 1)
+            return getter.setExecutor(mExecutor).getContacts();
+        return getter.setExecutor(getParallelExecutor()).getContacts();
+    }
+
+    /**
+     * Pool of {@link #setParallelism(int)} threads shared by builds of this builder, created on first use
+     */
+    private synchronized Executor getParallelExecutor() {
+        if (mParallelExecutor == null) {
+            mParallelExecutor = new ThreadPoolExecutor(mParallelism, mParallelism, IDLE_THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>());
+            // threads of idle builder are stopped, so pool doesn't have to be shut down
+            mParallelExecutor.allowCoreThreadTimeOut(true);
+        }
+        return mParallelExecutor;
+    }
+
+    /**
+     * @param requiredColumns columns that are queried even if they were not set with {@link #setContactColumns(ContactColumn...)}
+     */
+    private ContactsGetter initGetter(ContactColumn... requiredColumns) {
         ContactsGetter getter;
-        if (mSelectionBuilder.length() == 0)
+        String selection = generateSelection();
+        if (selection == null)
             getter = new ContactsGetter(mCtx, mEnabledFields, mSortOrder, null, null);
         else
-            getter = new ContactsGetter(mCtx, mEnabledFields, mSortOrder, generateSelectionArgs(), generateSelection());
-        return getter;
+            getter = new ContactsGetter(mCtx, mEnabledFields, mSortOrder, generateSelectionArgs(), selection);
+        return getter.setLoadStrategy(mLoadStrategy)
+            .setContactColumns(getContactColumns(requiredColumns))
+            .setNameColumns(mNameColumns);
+    }
+
+    private EnumSet<ContactColumn> getContactColumns(ContactColumn... requiredColumns) {
+        EnumSet<ContactColumn> columns = EnumSet.copyOf(mContactColumns);
+        columns.addAll(Arrays.asList(requiredColumns));
+        // snapshot is sorted by name and reconciled by modification date
+        if (mSnapshotFile != null) {
+            columns.add(ContactColumn.LAST_MODIFICATION_DATE);
+            columns.add(ContactColumn.DISPLAY_NAME);
+        }
+        // merge join restores sort order by name in memory
+        if (mLoadStrategy == LoadStrategy.MERGE_JOIN)
+            columns.add(ContactColumn.DISPLAY_NAME);
+        return columns;
+    }
+
+    private ContactsGetter initPageGetter(PageKey afterKey, int limit) {
+        if (mSorting == null)
+            throw new IllegalStateException("Pages can be built only with sort order from Sorting");
+        if (limit <= 0)
+            throw new IllegalArgumentException("Page limit should be positive");
+        String baseSelection = generateSelection();
+        StringBuilder selection = new StringBuilder(baseSelection == null ? "" : baseSelection);
+        List<String> params = getSelectionArgsList();
+        if (afterKey != null) {
+            if (selection.length() != 0)
+                selection.append(" AND ");
+            selection.append('(')
+                .append(getKeysetSelection(afterKey, params))
+                .append(')');
+        }
+        return new ContactsGetter(mCtx, mEnabledFields, getKeysetSortOrder(),
+            params.toArray(new String[params.size()]), selection.length() == 0 ? null : selection.toString())
+            .setLoadStrategy(mLoadStrategy)
+            .setContactColumns(getContactColumns(ContactColumn.DISPLAY_NAME))
+            .setNameColumns(mNameColumns)
+            .setLimit(limit);
+    }
+
+    private String getKeysetSortOrder() {
+        switch (mSorting) {
+            case BY_DISPLAY_NAME_ASC:
+                return mSorting.getSorting() + ", " + Sorting.BY_ID_ASC.getSorting();
+            case BY_DISPLAY_NAME_DESC:
+                return mSorting.getSorting() + ", " + Sorting.BY_ID_DESC.getSorting();
+            default:
+                return mSorting.getSorting();
+        }
+    }
+
+    /**
+     * Selection of contacts that follow key in current sort order, SQLite places null names first in ascending order
+     */
+    private String getKeysetSelection(PageKey afterKey, List<String> params) {
+        String id = ContactsContract.Contacts._ID;
+        String name = ContactsContract.Contacts.DISPLAY_NAME;
+        String afterId = String.valueOf(afterKey.getContactId());
+        switch (mSorting) {
+            case BY_ID_ASC:
+                params.add(afterId);
+                return id + " > ?";
+            case BY_ID_DESC:
+                params.add(afterId);
+                return id + " < ?";
+            case BY_DISPLAY_NAME_ASC:
+                if (afterKey.getDisplayName() == null) {
+                    params.add(afterId);
+                    return name + " IS NOT NULL OR " + id + " > ?";
+                }
+                params.add(afterKey.getDisplayName());
+                params.add(afterKey.getDisplayName());
+                params.add(afterId);
+                return name + " > ? OR (" + name + " = ? AND " + id + " > ?)";
+            case BY_DISPLAY_NAME_DESC:
+                if (afterKey.getDisplayName() == null) {
+                    params.add(afterId);
+                    return name + " IS NULL AND " + id + " < ?";
+                }
+                params.add(afterKey.getDisplayName());
+                params.add(afterKey.getDisplayName());
+                params.add(afterId);
+                return name + " < ? OR (" + name + " = ? AND " + id + " < ?) OR " + name + " IS NULL";
+            default:
+                throw new IllegalStateException("Unknown sort order " + mSorting);
+        }
     }
 
 
@@ -263,21 +655,480 @@ public class ContactsGetterBuilder {
      * @param T class of object you want to get data
      */
     public <T extends ContactData> List<T> buildList(Class<? extends ContactData> T) {
-        return applyFilters((List<T>) initGetter()
-            .setContactDataClass(T)
-            .getContacts());
+        return list(initGetter().setContactDataClass(T));
     }
 
     /**
      * Builds list of contacts
      */
     public List<ContactData> buildList() {
-        return applyFilters(initGetter().getContacts());
+        return list(initGetter());
+    }
+
+    /**
+     * <p>
+     * Builds list of contacts
+     * </p>
+     * <p>
+     * Objects are created by creator directly, so no reflection is used for every contact
+     * </p>
+     *
+     * @param creator creates empty object for every contact
+     */
+    public <T extends ContactData> List<T> buildList(ContactDataCreator<T> creator) {
+        return list(initGetter().setContactDataCreator(creator));
+    }
+
+    /**
+     * <p>
+     * Loads fields of contacts built with {@link LoadStrategy#LAZY}, e.g. contacts visible on screen,
+     * so they are queried together instead of on first access of every contact
+     * </p>
+     * <p>
+     * Contacts that are already loaded or were not built lazily are skipped
+     * </p>
+     *
+     * @param contacts contacts which fields should be loaded
+     */
+    public static void loadFields(List<? extends ContactData> contacts) {
+        Map<FieldsLoader, List<ContactData>> contactsByLoader = new LinkedHashMap<>();
+        for (ContactData contact : contacts) {
+            FieldsLoader loader = contact.getFieldsLoader();
+            if (loader == null)
+                continue;
+            List<ContactData> loaderContacts = contactsByLoader.get(loader);
+            if (loaderContacts == null) {
+                loaderContacts = new ArrayList<>();
+                contactsByLoader.put(loader, loaderContacts);
+            }
+            loaderContacts.add(contact);
+        }
+        for (Map.Entry<FieldsLoader, List<ContactData>> entry : contactsByLoader.entrySet())
+            entry.getKey().load(entry.getValue());
+    }
+
+    private <T extends ContactData> List<T> list(ContactsGetter getter) {
+        if (mSnapshotFile == null || Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN_MR2)
+            return applyFilters(getContacts(getter));
+        return applyFilters(getContactsWithSnapshot(getter));
+    }
+
+    /**
+     * <p>
+     * Builds list of contacts from snapshot file without querying contacts provider
+     * </p>
+     * <p>
+     * Contacts can be outdated, use {@link #buildList()} to get actual contacts
+     * </p>
+     *
+     * @return contacts from snapshot or empty list if there is no snapshot for this query
+     */
+    public List<ContactData> buildListFromSnapshot() {
+        return listFromSnapshot(initGetter());
+    }
+
+    /**
+     * <p>
+     * Builds list of contacts from snapshot file without querying contacts provider
+     * </p>
+     * <p>
+     * Contacts can be outdated, use {@link #buildList(Class)} to get actual contacts
+     * </p>
+     *
+     * @param T class of object you want to get data
+     * @return contacts from snapshot or empty list if there is no snapshot for this query
+     */
+    public <T extends ContactData> List<T> buildListFromSnapshot(Class<? extends ContactData> T) {
+        return listFromSnapshot(initGetter().setContactDataClass(T));
+    }
+
+    /**
+     * <p>
+     * Builds list of contacts from snapshot file without querying contacts provider
+     * </p>
+     * <p>
+     * Contacts can be outdated, use {@link #buildList(ContactDataCreator)} to get actual contacts
+     * </p>
+     *
+     * @param creator creates empty object for every contact
+     * @return contacts from snapshot or empty list if there is no snapshot for this query
+     */
+    public <T extends ContactData> List<T> buildListFromSnapshot(ContactDataCreator<T> creator) {
+        return listFromSnapshot(initGetter().setContactDataCreator(creator));
+    }
+
+    private <T extends ContactData> List<T> listFromSnapshot(ContactsGetter getter) {
+        if (mSnapshotFile == null)
+            throw new IllegalStateException("Snapshot file is not set");
+        List<T> contacts = new ContactsSnapshot(mSnapshotFile, getSnapshotSignature()).read(getter);
+        return applyFilters(contacts == null ? new ArrayList<T>() : contacts);
+    }
+
+    /**
+     * Reads snapshot and queries only contacts changed or deleted after it was written, then rewrites snapshot with merged contacts
+     */
+    private <T extends ContactData> List<T> getContactsWithSnapshot(ContactsGetter getter) {
+        ContactsSnapshot snapshot = new ContactsSnapshot(mSnapshotFile, getSnapshotSignature());
+        List<T> contacts = snapshot.read(getter);
+        if (contacts == null) {
+            contacts = getContacts(getter);
+            // snapshot stores fields of every contact, so lazy contacts are loaded in big batches
+            if (mLoadStrategy == LoadStrategy.LAZY)
+                loadFields(contacts);
+            snapshot.write(contacts, ContactsGetter.getLatestModificationDate(contacts, 0));
+            return contacts;
+        }
+        long since = snapshot.getWatermark();
+        // contacts that were changed so they don't match selection anymore should be removed from snapshot too
+        ContactsGetter.ChangedContactIds changedIds = mSelectionBuilder.length() == 0 && getCandidateLookups().isEmpty()
+            ? ContactsGetter.ChangedContactIds.EMPTY : getter.getChangedContactIds(since);
+        ContactsDelta<T> delta = getter.getDelta(getContacts(getter.setChangedSince(since)), since);
+        if (delta.isEmpty() && changedIds.ids.isEmpty())
+            return contacts;
+        contacts = mergeDelta(contacts, delta, changedIds.ids);
+        if (mLoadStrategy == LoadStrategy.LAZY)
+            loadFields(contacts);
+        snapshot.write(contacts, Math.max(delta.getWatermark(), changedIds.watermark));
+        return contacts;
+    }
+
+    <T extends ContactData> List<T> mergeDelta(List<T> contacts, ContactsDelta<T> delta, List<Integer> changedIds) {
+        IntObjectMap<T> changedMap = new IntObjectMap<>(delta.getChangedContacts().size());
+        for (T contact : delta.getChangedContacts())
+            changedMap.put(contact.getContactId(), contact);
+        IntObjectMap<Boolean> removedMap = new IntObjectMap<>(delta.getDeletedContactIds().size() + changedIds.size());
+        for (Integer id : delta.getDeletedContactIds())
+            removedMap.put(id, Boolean.TRUE);
+        for (Integer id : changedIds)
+            removedMap.put(id, Boolean.TRUE);
+        List<T> result = new ArrayList<>(contacts.size() + changedMap.size());
+        for (T contact : contacts) {
+            T changed = changedMap.remove(contact.getContactId());
+            if (changed != null)
+                result.add(changed);
+            else if (!removedMap.containsKey(contact.getContactId()))
+                result.add(contact);
+        }
+        changedMap.forEach((id, contact) -> result.add(contact));
+        if (mSorting != null)
+            Collections.sort(result, getSortingComparator());
+        return result;
+    }
+
+    /**
+     * <p>
+     * Orders merged contacts same way as sort order of query, null names go first in ascending order like in SQLite
+     * </p>
+     * <p>
+     * Names are compared by code points, it is the order of default BINARY collation of provider
+     * </p>
+     */
+    private Comparator<ContactData> getSortingComparator() {
+        final boolean descending = mSorting == Sorting.BY_DISPLAY_NAME_DESC || mSorting == Sorting.BY_ID_DESC;
+        final boolean byName = mSorting == Sorting.BY_DISPLAY_NAME_ASC || mSorting == Sorting.BY_DISPLAY_NAME_DESC;
+        return (first, second) -> {
+            int result = 0;
+            if (byName) {
+                String firstName = first.getCompositeName();
+                String secondName = second.getCompositeName();
+                if (firstName == null || secondName == null)
+                    result = firstName == null ? (secondName == null ? 0 : -1) : 1;
+                else
+                    result = compareCodePoints(firstName, secondName);
+            }
+            if (result == 0)
+                result = first.getContactId() < second.getContactId() ? -1 : (first.getContactId() == second.getContactId() ? 0 : 1);
+            return descending ? -result : result;
+        };
+    }
+
+    /**
+     * String#compareTo compares UTF-16 chars, which differs from UTF-8 byte order of SQLite for supplementary characters
+     */
+    private static int compareCodePoints(String first, String second) {
+        int i = 0;
+        int j = 0;
+        while (i < first.length() && j < second.length()) {
+            int firstCodePoint = first.codePointAt(i);
+            int secondCodePoint = second.codePointAt(j);
+            if (firstCodePoint != secondCodePoint)
+                return firstCodePoint < secondCodePoint ? -1 : 1;
+            i += Character.charCount(firstCodePoint);
+            j += Character.charCount(secondCodePoint);
+        }
+        return (first.length() - i) - (second.length() - j);
+    }
+
+    private String getSnapshotSignature() {
+        List<String> fields = new ArrayList<>(mEnabledFields.size());
+        for (FieldType fieldType : mEnabledFields)
+            fields.add(fieldType.name());
+        Collections.sort(fields);
+        return fields + "|" + mSelectionBuilder + "|" + mParamsList + "|" + getCandidateLookups() + "|" + mSortOrder
+            + "|" + getContactColumns() + "|" + mNameColumns;
+    }
+
+    /**
+     * <p>
+     * Builds iterator that streams contacts one by one, so memory usage doesn't depend on size of address book
+     * </p>
+     * <p>
+     * Note : contacts are streamed ordered by id, sort order is ignored
+     * </p>
+     * <p>
+     * Iterator should be closed if it is not consumed till the end
+     * </p>
+     */
+    public ContactsIterator<ContactData> buildIterator() {
+        return iterate(initGetter());
+    }
+
+    /**
+     * <p>
+     * Builds iterator that streams contacts one by one, so memory usage doesn't depend on size of address book
+     * </p>
+     * <p>
+     * Note : contacts are streamed ordered by id, sort order is ignored
+     * </p>
+     *
+     * @param T class of object you want to get data
+     */
+    public <T extends ContactData> ContactsIterator<T> buildIterator(Class<? extends ContactData> T) {
+        return iterate(initGetter().setContactDataClass(T));
+    }
+
+    /**
+     * <p>
+     * Builds iterator that streams contacts one by one, so memory usage doesn't depend on size of address book
+     * </p>
+     * <p>
+     * Note : contacts are streamed ordered by id, sort order is ignored
+     * </p>
+     *
+     * @param creator creates empty object for every contact
+     */
+    public <T extends ContactData> ContactsIterator<T> buildIterator(ContactDataCreator<T> creator) {
+        return iterate(initGetter().setContactDataCreator(creator));
+    }
+
+    private <T extends ContactData> ContactsIterator<T> iterate(ContactsGetter getter) {
+        return getter.iterateContacts(getOrderedFilters());
+    }
+
+    /**
+     * <p>
+     * Builds page of contacts that follow key in current sort order
+     * </p>
+     * <p>
+     * Only contacts of this page are queried, so time to load it doesn't depend on size of address book
+     * </p>
+     * <p>
+     * Note : works only with sort order from {@link Sorting}
+     * </p>
+     *
+     * @param afterKey key of last contact of previous page, null to load first page
+     * @param limit    max number of contacts on page
+     */
+    public ContactsPage<ContactData> buildPage(PageKey afterKey, int limit) {
+        return page(initPageGetter(afterKey, limit), limit);
+    }
+
+    /**
+     * <p>
+     * Builds page of contacts that follow key in current sort order
+     * </p>
+     * <p>
+     * Note : works only with sort order from {@link Sorting}
+     * </p>
+     *
+     * @param afterKey key of last contact of previous page, null to load first page
+     * @param limit    max number of contacts on page
+     * @param T        class of object you want to get data
+     */
+    public <T extends ContactData> ContactsPage<T> buildPage(PageKey afterKey, int limit, Class<? extends ContactData> T) {
+        return page(initPageGetter(afterKey, limit).setContactDataClass(T), limit);
+    }
+
+    /**
+     * <p>
+     * Builds page of contacts that follow key in current sort order
+     * </p>
+     * <p>
+     * Note : works only with sort order from {@link Sorting}
+     * </p>
+     *
+     * @param afterKey key of last contact of previous page, null to load first page
+     * @param limit    max number of contacts on page
+     * @param creator  creates empty object for every contact
+     */
+    public <T extends ContactData> ContactsPage<T> buildPage(PageKey afterKey, int limit, ContactDataCreator<T> creator) {
+        return page(initPageGetter(afterKey, limit).setContactDataCreator(creator), limit);
+    }
+
+    private <T extends ContactData> ContactsPage<T> page(ContactsGetter getter, int limit) {
+        List<T> contacts = getContacts(getter);
+        PageKey nextPageKey = contacts.size() < limit ? null : PageKey.of(contacts.get(contacts.size() - 1));
+        return new ContactsPage<>(applyFilters(contacts), nextPageKey);
+    }
+
+    /**
+     * <p>
+     * Builds index for prefix search over contacts of this builder
+     * </p>
+     * <p>
+     * Only loaded fields are indexed, e.g. add {@link FieldType#EMAILS} to search by emails
+     * </p>
+     * <p>
+     * Use {@link ContactsSearchIndex#apply(ContactsDelta)} with {@link #buildDelta(long)} to keep index up to date
+     * </p>
+     */
+    public ContactsSearchIndex buildSearchIndex() {
+        List<ContactData> contacts = buildList();
+        // every contact is indexed, so lazy contacts are loaded in big batches instead of one read ahead batch per miss
+        if (mLoadStrategy == LoadStrategy.LAZY)
+            loadFields(contacts);
+        return ContactsSearchIndex.of(contacts);
+    }
+
+    /**
+     * <p>
+     * Builds index of all phone numbers to find contacts by number without loading them
+     * </p>
+     * <p>
+     * Note : only phone rows are queried, selection, fields and filters of this builder are ignored
+     * </p>
+     * <p>
+     * Use {@link PhoneIndex#apply(ContactsDelta)} with {@link #buildDelta(long)} to keep index up to date
+     * </p>
+     */
+    public PhoneIndex buildPhoneIndex() {
+        return new ContactsGetter(mCtx, mEnabledFields, mSortOrder, null, null)
+            .getPhoneIndex();
     }
 
     public List<ContactData> buildListOfDeletedContacts(long since) {
         return applyFilters(initGetter().getDeletedContacts(since));
     }
+
+    /**
+     * <p>
+     * Builds changes of address book after timestamp
+     * </p>
+     * <p>
+     * Only changed contacts are queried, so time to load delta depends on number of changes rather than size of address book
+     * </p>
+     * <p>
+     * Note : sort order and filters are applied only to changed contacts
+     * </p>
+     *
+     * @param sinceTimestamp watermark of previous delta or 0 to load all contacts
+     */
+    public ContactsDelta<ContactData> buildDelta(long sinceTimestamp) {
+        return buildDelta(sinceTimestamp, (Class<? extends ContactData>) null);
+    }
+
+    /**
+     * <p>
+     * Builds changes of address book after timestamp
+     * </p>
+     * <p>
+     * Note : sort order and filters are applied only to changed contacts
+     * </p>
+     *
+     * @param sinceTimestamp watermark of previous delta or 0 to load all contacts
+     * @param T              class of object you want to get data
+     */
+    public <T extends ContactData> ContactsDelta<T> buildDelta(long sinceTimestamp, Class<? extends ContactData> T) {
+        return delta(initDeltaGetter(sinceTimestamp).setContactDataClass(T), sinceTimestamp);
+    }
+
+    /**
+     * <p>
+     * Builds changes of address book after timestamp
+     * </p>
+     * <p>
+     * Note : sort order and filters are applied only to changed contacts
+     * </p>
+     *
+     * @param sinceTimestamp watermark of previous delta or 0 to load all contacts
+     * @param creator        creates empty object for every contact
+     */
+    public <T extends ContactData> ContactsDelta<T> buildDelta(long sinceTimestamp, ContactDataCreator<T> creator) {
+        return delta(initDeltaGetter(sinceTimestamp).setContactDataCreator(creator), sinceTimestamp);
+    }
+
+    private <T extends ContactData> ContactsDelta<T> delta(ContactsGetter getter, long sinceTimestamp) {
+        List<T> changedContacts = getContacts(getter);
+        ContactsDelta<T> delta = getter.getDelta(changedContacts, sinceTimestamp);
+        applyFilters(changedContacts);
+        return delta;
+    }
+
+    private ContactsGetter initDeltaGetter(long sinceTimestamp) {
+        return initGetter(ContactColumn.LAST_MODIFICATION_DATE).setChangedSince(sinceTimestamp);
+    }
+
+    /**
+     * Builds list with modification dates, so it can be used as base for {@link #buildQueryDelta(long, ContactDataCreator)}
+     */
+    <T extends ContactData> List<T> buildQueryList(ContactDataCreator<T> creator) {
+        return list(initGetter(ContactColumn.LAST_MODIFICATION_DATE).setContactDataCreator(creator));
+    }
+
+    /**
+     * Builds delta where contacts that were changed so they don't match selection or filters anymore are reported as deleted
+     */
+    <T extends ContactData> ContactsDelta<T> buildQueryDelta(long sinceTimestamp, ContactDataCreator<T> creator) {
+        ContactsGetter getter = initGetter(ContactColumn.LAST_MODIFICATION_DATE).setContactDataCreator(creator);
+        boolean hasQuery = mSelectionBuilder.length() != 0 || !mFilterList.isEmpty() || !mCandidateLookups.isEmpty();
+        ContactsGetter.ChangedContactIds changedIds = hasQuery ? getter.getChangedContactIds(sinceTimestamp)
+            : ContactsGetter.ChangedContactIds.EMPTY;
+        ContactsDelta<T> delta = delta(getter.setChangedSince(sinceTimestamp), sinceTimestamp);
+        if (changedIds.ids.isEmpty())
+            return delta;
+        IntObjectMap<T> matchedMap = new IntObjectMap<>(delta.getChangedContacts().size());
+        for (T contact : delta.getChangedContacts())
+            matchedMap.put(contact.getContactId(), contact);
+        List<Integer> removedIds = new ArrayList<>(delta.getDeletedContactIds());
+        for (Integer id : changedIds.ids) {
+            if (!matchedMap.containsKey(id))
+                removedIds.add(id);
+        }
+        // contacts that left query are changed after watermark of matched ones, so watermark is advanced past them too
+        return new ContactsDelta<>(delta.getChangedContacts(), removedIds, Math.max(delta.getWatermark(), changedIds.watermark));
+    }
+
+    /**
+     * <p>
+     * Builds query that keeps contacts of this builder up to date and notifies listeners about changes
+     * </p>
+     * <p>
+     * Note : builder shouldn't be changed after live query is built
+     * </p>
+     * <p>
+     * AVAILABLE FROM 18 API
+     * </p>
+     */
+    public LiveContactsQuery<ContactData> buildLiveQuery() {
+        return new LiveContactsQuery<>(mCtx, this, null);
+    }
+
+    /**
+     * <p>
+     * Builds query that keeps contacts of this builder up to date and notifies listeners about changes
+     * </p>
+     * <p>
+     * Note : builder shouldn't be changed after live query is built
+     * </p>
+     * <p>
+     * AVAILABLE FROM 18 API
+     * </p>
+     *
+     * @param creator creates empty object for every contact
+     */
+    public <T extends ContactData> LiveContactsQuery<T> buildLiveQuery(ContactDataCreator<T> creator) {
+        return new LiveContactsQuery<>(mCtx, this, creator);
+    }
     /**
      * Gets contact by local id
      *
@@ -285,12 +1136,7 @@ public class ContactsGetterBuilder {
      * @return contact with data specified by options or null if no contact with this id
      */
     public ContactData getById(int id) {
-        if (mSelectionBuilder.length() != 0)
-            mSelectionBuilder.append(" AND ");
-        mSelectionBuilder.append(ContactsContract.CommonDataKinds.Phone._ID)
-            .append(" = ?");
-        mParamsList.add(String.valueOf(id));
-        return firstOrNull();
+        return getByIds(Collections.singleton(id)).get(id);
     }
 
     /**
@@ -301,12 +1147,131 @@ public class ContactsGetterBuilder {
      * @return contact with data specified by options or null if no contact with this id
      */
     public <T extends ContactData> T getById(int id, Class<T> T) {
-        if (mSelectionBuilder.length() != 0)
-            mSelectionBuilder.append(" AND ");
-        mSelectionBuilder.append(ContactsContract.CommonDataKinds.Phone._ID)
-            .append(" = ?");
-        mParamsList.add(String.valueOf(id));
-        return firstOrNull(T);
+        return getByIds(Collections.singleton(id), T).get(id);
+    }
+
+    /**
+     * <p>
+     * Gets contacts by local ids, contacts are queried in chunks that fit into {@value #MAX_SELECTION_ARGS} selection arguments,
+     * so every table is queried once per chunk instead of loading all contacts for every id
+     * </p>
+     * <p>
+     * Selection and filters of this builder are applied too
+     * </p>
+     *
+     * @param ids ids to search for
+     * @return contacts with data specified by options by their ids, ids without contact are missing
+     */
+    public Map<Integer, ContactData> getByIds(Collection<Integer> ids) {
+        return getByIds(ids, null);
+    }
+
+    /**
+     * <p>
+     * Gets contacts by local ids, contacts are queried in chunks that fit into {@value #MAX_SELECTION_ARGS} selection arguments,
+     * so every table is queried once per chunk instead of loading all contacts for every id
+     * </p>
+     * <p>
+     * Selection and filters of this builder are applied too
+     * </p>
+     *
+     * @param ids ids to search for
+     * @param T   class of object you want to get data
+     * @return contacts with data specified by options by their ids, ids without contact are missing
+     */
+    public <T extends ContactData> Map<Integer, T> getByIds(Collection<Integer> ids, Class<T> T) {
+        List<String> values = new ArrayList<>(ids.size());
+        for (Integer id : new LinkedHashSet<>(ids))
+            values.add(String.valueOf(id));
+        List<T> contacts = getByColumnValues(ContactsContract.Contacts._ID, values, T);
+        Map<Integer, T> contactsById = new HashMap<>(contacts.size() * 2);
+        for (T contact : contacts)
+            contactsById.put(contact.getContactId(), contact);
+        return contactsById;
+    }
+
+    /**
+     * <p>
+     * Gets contacts by lookup keys, contacts are queried in chunks like with {@link #getByIds(Collection)}
+     * </p>
+     * <p>
+     * Keys that changed after contacts were joined or split are resolved one by one with lookup uri
+     * </p>
+     *
+     * @param lookupKeys lookup keys to search for
+     * @return contacts with data specified by options by requested lookup keys, keys without contact are missing
+     */
+    public Map<String, ContactData> getByLookupKeys(Collection<String> lookupKeys) {
+        return getByLookupKeys(lookupKeys, null);
+    }
+
+    /**
+     * <p>
+     * Gets contacts by lookup keys, contacts are queried in chunks like with {@link #getByIds(Collection)}
+     * </p>
+     * <p>
+     * Keys that changed after contacts were joined or split are resolved one by one with lookup uri
+     * </p>
+     *
+     * @param lookupKeys lookup keys to search for
+     * @param T          class of object you want to get data
+     * @return contacts with data specified by options by requested lookup keys, keys without contact are missing
+     */
+    public <T extends ContactData> Map<String, T> getByLookupKeys(Collection<String> lookupKeys, Class<T> T) {
+        Set<String> keys = new LinkedHashSet<>(lookupKeys);
+        List<T> contacts = getByColumnValues(ContactsContract.Contacts.LOOKUP_KEY, new ArrayList<>(keys), T);
+        Map<String, T> contactsByKey = new HashMap<>(contacts.size() * 2);
+        for (T contact : contacts)
+            contactsByKey.put(contact.getLookupKey(), contact);
+        if (contactsByKey.size() == keys.size())
+            return contactsByKey;
+        ContactsGetter getter = initGetter();
+        Map<Integer, String> staleKeys = new HashMap<>();
+        for (String key : keys) {
+            if (contactsByKey.containsKey(key))
+                continue;
+            Integer id = getter.getContactIdByLookupKey(key);
+            if (id != null)
+                staleKeys.put(id, key);
+        }
+        if (staleKeys.isEmpty())
+            return contactsByKey;
+        for (T contact : getByIds(staleKeys.keySet(), T).values())
+            contactsByKey.put(staleKeys.get(contact.getContactId()), contact);
+        return contactsByKey;
+    }
+
+    /**
+     * Queries contacts where column is one of values, values are bound in chunks to stay below limit of SQLite variables
+     */
+    private <T extends ContactData> List<T> getByColumnValues(String column, List<String> values, Class<T> T) {
+        List<T> contacts = new ArrayList<>(values.size());
+        // data queries bind selection of contacts query after their mimetypes
+        int chunkSize = MAX_SELECTION_ARGS - getSelectionArgsList().size() - FieldType.values().length;
+        if (chunkSize <= 0)
+            throw new IllegalStateException("Selection has too many parameters");
+        for (int start = 0; start < values.size(); start += chunkSize) {
+            List<String> chunk = values.subList(start, Math.min(values.size(), start + chunkSize));
+            contacts.addAll(getContacts(initInGetter(column, chunk).setContactDataClass(T)));
+        }
+        return applyFilters(contacts);
+    }
+
+    private ContactsGetter initInGetter(String column, List<String> values) {
+        String baseSelection = generateSelection();
+        StringBuilder selection = new StringBuilder();
+        if (baseSelection != null)
+            selection.append('(').append(baseSelection).append(") AND ");
+        selection.append(column).append(" IN (");
+        for (int i = 0; i < values.size(); i++)
+            selection.append(i == 0 ? "?" : ",?");
+        selection.append(')');
+        List<String> params = getSelectionArgsList();
+        params.addAll(values);
+        return new ContactsGetter(mCtx, mEnabledFields, mSortOrder, params.toArray(new String[params.size()]), selection.toString())
+            .setLoadStrategy(mLoadStrategy)
+            .setContactColumns(getContactColumns(ContactColumn.LOOKUP_KEY))
+            .setNameColumns(mNameColumns);
     }
 
     /**
@@ -333,11 +1298,60 @@ public class ContactsGetterBuilder {
             return contacts.get(0);
     }
 
+    /**
+     * @return selection of builder restricted to candidates of provider side lookups, null if there is no selection
+     */
     private String generateSelection() {
-        return mSelectionBuilder.toString();
+        StringBuilder selection = new StringBuilder(mSelectionBuilder);
+        for (CandidateLookup lookup : getQueryableCandidateLookups()) {
+            if (selection.length() != 0)
+                selection.append(" AND ");
+            selection.append(lookup.getSelection());
+        }
+        return selection.length() == 0 ? null : selection.toString();
+    }
+
+    /**
+     * Lookups are matched by subqueries, ids of candidates are queried on every call only if provider doesn't support them
+     */
+    private List<CandidateLookup> getQueryableCandidateLookups() {
+        List<CandidateLookup> lookups = getCandidateLookups();
+        if (lookups.isEmpty() || ProviderViews.isSupported(mCtx.getContentResolver()))
+            return lookups;
+        List<CandidateLookup> queried = new ArrayList<>(lookups.size());
+        for (CandidateLookup lookup : lookups)
+            queried.add(lookup.withQueriedIds(mCtx.getContentResolver()));
+        return queried;
+    }
+
+    /**
+     * Lookups of phone filters and of filters that can be described as {@link ProviderPredicate}
+     */
+    private List<CandidateLookup> getCandidateLookups() {
+        List<CandidateLookup> lookups = new ArrayList<>(mCandidateLookups);
+        for (BaseFilter filter : mFilterList) {
+            ProviderPredicate predicate = filter.getProviderPredicate();
+            if (predicate != null)
+                lookups.add(CandidateLookup.byPredicate(predicate));
+        }
+        return lookups;
     }
 
     private String[] generateSelectionArgs() {
-        return mParamsList.toArray(new String[mParamsList.size()]);
+        List<String> args = getSelectionArgsList();
+        return args.toArray(new String[args.size()]);
+    }
+
+    /**
+     * @return arguments of {@link #generateSelection()}, arguments of candidate lookups follow arguments of builder
+     */
+    private List<String> getSelectionArgsList() {
+        List<String> args = new ArrayList<>(mParamsList);
+        // lookups with queried ids have no arguments
+        if (!ProviderViews.isSupported(mCtx.getContentResolver()))
+            return args;
+        for (CandidateLookup lookup : getCandidateLookups())
+            args.addAll(lookup.getSelectionArgs());
+        return args;
     }
 }
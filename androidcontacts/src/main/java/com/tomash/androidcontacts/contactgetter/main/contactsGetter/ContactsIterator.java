@@ -0,0 +1,128 @@
+package com.tomash.androidcontacts.contactgetter.main.contactsGetter;
+
+import android.database.Cursor;
+import com.tomash.androidcontacts.contactgetter.entity.ContactData;
+import com.tomash.androidcontacts.contactgetter.entity.Group;
+import com.tomash.androidcontacts.contactgetter.interfaces.BaseFilter;
+import com.tomash.androidcontacts.contactgetter.utils.IntObjectMap;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * <p>
+ * Iterator that streams contacts one by one ordered by contact id.
+ * </p>
+ * <p>
+ * Only data of current contact is kept in memory, so memory usage doesn't depend on size of address book.
+ * </p>
+ * <p>
+ * Cursors are closed when all contacts are consumed, call {@link #close()} if iteration is stopped earlier.
+ * </p>
+ *
+ * @param <T> type of streamed contacts
+ */
+public class ContactsIterator<T extends ContactData> implements Iterator<T>, Closeable {
+    private final ContactsGetter mGetter;
+    private final Cursor mContactsCursor;
+    private final Cursor mDataCursor;
+    private final Cursor mAccountsCursor;
+    private final IntObjectMap<Group> mGroupMapById;
+    private final List<BaseFilter> mFilters;
+    private ContactsGetter.ContactRowColumns mContactColumns;
+    private ContactsGetter.DataRowColumns mDataColumns;
+    private ContactsGetter.AccountRowColumns mAccountColumns;
+    private boolean mHasDataRow;
+    private boolean mHasAccountRow;
+    private boolean mClosed;
+    private T mNext;
+
+    ContactsIterator(ContactsGetter getter, Cursor contactsCursor, Cursor dataCursor, Cursor accountsCursor,
+                     IntObjectMap<Group> groupMapById, List<BaseFilter> filters) {
+        mGetter = getter;
+        mContactsCursor = contactsCursor;
+        mDataCursor = dataCursor;
+        mAccountsCursor = accountsCursor;
+        mGroupMapById = groupMapById;
+        mFilters = filters;
+        if (contactsCursor == null) {
+            close();
+            return;
+        }
+        mContactColumns = new ContactsGetter.ContactRowColumns(contactsCursor);
+        if (mContactColumns.isInvalid()) {
+            close();
+            return;
+        }
+        if (dataCursor != null) {
+            mDataColumns = new ContactsGetter.DataRowColumns(dataCursor);
+            mHasDataRow = !mDataColumns.isInvalid() && dataCursor.moveToNext();
+        }
+        if (accountsCursor != null) {
+            mAccountColumns = new ContactsGetter.AccountRowColumns(accountsCursor);
+            mHasAccountRow = !mAccountColumns.isInvalid() && accountsCursor.moveToNext();
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (mNext == null && !mClosed)
+            mNext = readNext();
+        return mNext != null;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        T current = mNext;
+        mNext = null;
+        return current;
+    }
+
+    private T readNext() {
+        while (mContactsCursor.moveToNext()) {
+            T contact = mGetter.readContact(mContactsCursor, mContactColumns);
+            int id = contact.getContactId();
+            while (mHasDataRow && mDataCursor.getInt(mDataColumns.contactId) < id)
+                mHasDataRow = mDataCursor.moveToNext();
+            while (mHasDataRow && mDataCursor.getInt(mDataColumns.contactId) == id) {
+                mGetter.bindDataRow(mDataCursor, mDataColumns, contact, mGroupMapById);
+                mHasDataRow = mDataCursor.moveToNext();
+            }
+            while (mHasAccountRow && mAccountsCursor.getInt(mAccountColumns.contactId) < id)
+                mHasAccountRow = mAccountsCursor.moveToNext();
+            while (mHasAccountRow && mAccountsCursor.getInt(mAccountColumns.contactId) == id) {
+                mGetter.bindAccountRow(mAccountsCursor, mAccountColumns, contact);
+                mHasAccountRow = mAccountsCursor.moveToNext();
+            }
+            if (passedFilters(contact, mFilters))
+                return contact;
+        }
+        close();
+        return null;
+    }
+
+    static boolean passedFilters(ContactData contact, List<BaseFilter> filters) {
+        for (BaseFilter filter : filters) {
+            if (!filter.passedFilter(contact))
+                return false;
+        }
+        return true;
+    }
+
+    @Override
+    public void close() {
+        if (mClosed)
+            return;
+        mClosed = true;
+        if (mContactsCursor != null)
+            mContactsCursor.close();
+        if (mDataCursor != null)
+            mDataCursor.close();
+        if (mAccountsCursor != null)
+            mAccountsCursor.close();
+    }
+}
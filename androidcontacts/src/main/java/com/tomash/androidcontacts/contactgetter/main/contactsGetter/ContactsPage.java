@@ -0,0 +1,43 @@
+package com.tomash.androidcontacts.contactgetter.main.contactsGetter;
+
+import com.tomash.androidcontacts.contactgetter.entity.ContactData;
+
+import java.util.List;
+
+/**
+ * Page of contacts loaded by {@link ContactsGetterBuilder#buildPage(PageKey, int)}
+ *
+ * @param <T> type of contacts on this page
+ */
+public class ContactsPage<T extends ContactData> {
+    private final List<T> contacts;
+    private final PageKey nextPageKey;
+
+    ContactsPage(List<T> contacts, PageKey nextPageKey) {
+        this.contacts = contacts;
+        this.nextPageKey = nextPageKey;
+    }
+
+    /**
+     * <p>
+     * Contacts of this page
+     * </p>
+     * <p>
+     * Note : filters are applied after page is loaded, so page can contain less contacts than requested
+     * </p>
+     */
+    public List<T> getContacts() {
+        return contacts;
+    }
+
+    /**
+     * @return key that should be used to load next page or null if this page is the last one
+     */
+    public PageKey getNextPageKey() {
+        return nextPageKey;
+    }
+
+    public boolean hasNextPage() {
+        return nextPageKey != null;
+    }
+}
@@ -0,0 +1,306 @@
+package com.tomash.androidcontacts.contactgetter.main.contactsGetter;
+
+import android.content.Context;
+import android.net.Uri;
+
+import com.tomash.androidcontacts.contactgetter.entity.Address;
+import com.tomash.androidcontacts.contactgetter.entity.ContactData;
+import com.tomash.androidcontacts.contactgetter.entity.Email;
+import com.tomash.androidcontacts.contactgetter.entity.Group;
+import com.tomash.androidcontacts.contactgetter.entity.IMAddress;
+import com.tomash.androidcontacts.contactgetter.entity.NameData;
+import com.tomash.androidcontacts.contactgetter.entity.Organization;
+import com.tomash.androidcontacts.contactgetter.entity.PhoneNumber;
+import com.tomash.androidcontacts.contactgetter.entity.Relation;
+import com.tomash.androidcontacts.contactgetter.entity.SpecialDate;
+import com.tomash.androidcontacts.contactgetter.interfaces.WithLabel;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>
+ * Snapshot of loaded contacts stored in compact binary file.
+ * </p>
+ * <p>
+ * File is read through memory mapping, so contacts are decoded straight from page cache without intermediate streams.
+ * </p>
+ * <p>
+ * Snapshot is bound to signature of query it was built by, snapshot of other query or other format version is ignored.
+ * </p>
+ */
+class ContactsSnapshot {
+    private static final int MAGIC = 0x41435331;
+    private static final int VERSION = 2;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private final File mFile;
+    private final String mSignature;
+    private long mWatermark;
+
+    ContactsSnapshot(File file, String signature) {
+        this.mFile = file;
+        this.mSignature = signature;
+    }
+
+    /**
+     * @return watermark of last successfully read or written snapshot
+     */
+    long getWatermark() {
+        return mWatermark;
+    }
+
+    /**
+     * Reads contacts from snapshot file
+     *
+     * @param getter creates contact objects
+     * @return contacts from snapshot or null if there is no valid snapshot for this query
+     */
+    <T extends ContactData> List<T> read(ContactsGetter getter) {
+        if (!mFile.isFile())
+            return null;
+        RandomAccessFile file = null;
+        try {
+            file = new RandomAccessFile(mFile, "r");
+            FileChannel channel = file.getChannel();
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION || !mSignature.equals(readString(buffer)))
+                return null;
+            long watermark = buffer.getLong();
+            int count = buffer.getInt();
+            List<T> contacts = new ArrayList<>(Math.min(count, buffer.remaining()));
+            for (int i = 0; i < count; i++) {
+                T contact = getter.getContactData();
+                readContact(buffer, getter.getContext(), contact);
+                contacts.add(contact);
+            }
+            mWatermark = watermark;
+            return contacts;
+        } catch (IOException | BufferUnderflowException | IllegalArgumentException e) {
+            // corrupted snapshot is the same as missing one, contacts are loaded from provider and snapshot is rewritten
+            return null;
+        } finally {
+            closeQuietly(file);
+        }
+    }
+
+    /**
+     * Replaces snapshot file with new contacts, file is written to temporary file first so snapshot is never left half written
+     *
+     * @return true if snapshot was written
+     */
+    boolean write(List<? extends ContactData> contacts, long watermark) {
+        File tempFile = new File(mFile.getPath() + ".tmp");
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            writeString(out, mSignature);
+            out.writeLong(watermark);
+            out.writeInt(contacts.size());
+            for (ContactData contact : contacts)
+                writeContact(out, contact);
+            out.close();
+            out = null;
+            if (!tempFile.renameTo(mFile))
+                return false;
+            mWatermark = watermark;
+            return true;
+        } catch (IOException e) {
+            // snapshot is only a cache, contacts are still returned without it
+            return false;
+        } finally {
+            closeQuietly(out);
+            if (tempFile.exists())
+                tempFile.delete();
+        }
+    }
+
+    private static void writeContact(DataOutputStream out, ContactData contact) throws IOException {
+        out.writeInt(contact.getContactId());
+        writeString(out, contact.getLookupKey());
+        writeString(out, contact.getCompositeName());
+        out.writeLong(contact.getLastModificationDate());
+        out.writeBoolean(contact.isFavorite());
+        writeString(out, contact.getPhotoUri() == null ? null : contact.getPhotoUri().toString());
+        writeString(out, contact.getNote());
+        writeString(out, contact.getNickName());
+        writeString(out, contact.getSipAddress());
+        NameData nameData = contact.getNameData();
+        writeString(out, nameData.getFullName());
+        writeString(out, nameData.getFirstName());
+        writeString(out, nameData.getSurname());
+        writeString(out, nameData.getNamePrefix());
+        writeString(out, nameData.getMiddleName());
+        writeString(out, nameData.getNameSuffix());
+        writeString(out, nameData.getPhoneticFirst());
+        writeString(out, nameData.getPhoneticMiddle());
+        writeString(out, nameData.getPhoneticLast());
+        Organization organization = contact.getOrganization();
+        writeString(out, organization.getName());
+        writeString(out, organization.getTitle());
+        writeString(out, organization.getDepartment());
+        writeStrings(out, contact.getWebsitesList());
+        writeStrings(out, contact.getAccountName());
+        writeStrings(out, contact.getAccountType());
+        out.writeInt(contact.getGroupList().size());
+        for (Group group : contact.getGroupList()) {
+            out.writeInt(group.getGroupId());
+            writeString(out, group.getGroupTitle());
+        }
+        out.writeInt(contact.getPhoneList().size());
+        for (PhoneNumber phoneNumber : contact.getPhoneList()) {
+            writeLabel(out, phoneNumber);
+            out.writeBoolean(phoneNumber.isPrimary());
+        }
+        writeLabels(out, contact.getEmailList());
+        writeLabels(out, contact.getAddressesList());
+        writeLabels(out, contact.getImAddressesList());
+        writeLabels(out, contact.getRelationsList());
+        writeLabels(out, contact.getSpecialDatesList());
+    }
+
+    private static void readContact(MappedByteBuffer buffer, Context ctx, ContactData contact) {
+        int id = buffer.getInt();
+        contact.setContactId(id)
+            .setLookupKey(readString(buffer))
+            .setCompositeName(readString(buffer))
+            .setLastModificationDate(buffer.getLong())
+            .setFavorite(buffer.get() != 0);
+        String photoUri = readString(buffer);
+        contact.setPhotoUri(photoUri == null || photoUri.isEmpty() ? Uri.EMPTY : Uri.parse(photoUri))
+            .setNote(readString(buffer))
+            .setNickName(readString(buffer))
+            .setSipAddress(readString(buffer));
+        contact.getNameData()
+            .setFullName(readString(buffer))
+            .setFirstName(readString(buffer))
+            .setSurname(readString(buffer))
+            .setNamePrefix(readString(buffer))
+            .setMiddleName(readString(buffer))
+            .setNameSuffix(readString(buffer))
+            .setPhoneticFirst(readString(buffer))
+            .setPhoneticMiddle(readString(buffer))
+            .setPhoneticLast(readString(buffer));
+        contact.setOrganization(new Organization(readString(buffer), readString(buffer), readString(buffer)));
+        readStrings(buffer, contact.getWebsitesList());
+        readStrings(buffer, contact.getAccountName());
+        readStrings(buffer, contact.getAccountType());
+        int groupCount = buffer.getInt();
+        for (int i = 0; i < groupCount; i++) {
+            contact.getGroupList().add(new Group()
+                .setGroupId(buffer.getInt())
+                .setGroupTitle(readString(buffer)));
+        }
+        int phoneCount = buffer.getInt();
+        for (int i = 0; i < phoneCount; i++) {
+            PhoneNumber phoneNumber = readLabel(buffer, id, ctx, PhoneNumber::new, PhoneNumber::new);
+            phoneNumber.setPrimary(buffer.get() != 0);
+            contact.getPhoneList().add(phoneNumber);
+        }
+        readLabels(buffer, id, ctx, Email::new, Email::new, contact.getEmailList());
+        readLabels(buffer, id, ctx, Address::new, Address::new, contact.getAddressesList());
+        readLabels(buffer, id, ctx, IMAddress::new, IMAddress::new, contact.getImAddressesList());
+        readLabels(buffer, id, ctx, Relation::new, Relation::new, contact.getRelationsList());
+        readLabels(buffer, id, ctx, SpecialDate::new, SpecialDate::new, contact.getSpecialDatesList());
+    }
+
+    private static void writeLabels(DataOutputStream out, List<? extends WithLabel> labels) throws IOException {
+        out.writeInt(labels.size());
+        for (WithLabel label : labels)
+            writeLabel(out, label);
+    }
+
+    /**
+     * Only names of custom labels are stored, names of other labels depend on locale and are resolved on read
+     */
+    private static void writeLabel(DataOutputStream out, WithLabel label) throws IOException {
+        writeString(out, label.getMainData());
+        out.writeInt(label.getLabelId());
+        writeString(out, label.getLabelId() == label.getCustomLabelId() ? label.getLabelName() : null);
+    }
+
+    private static <T extends WithLabel> void readLabels(MappedByteBuffer buffer, int contactId, Context ctx, LabelCreator<T> creator,
+                                                         CustomLabelCreator<T> customCreator, List<T> labels) {
+        int count = buffer.getInt();
+        for (int i = 0; i < count; i++)
+            labels.add(readLabel(buffer, contactId, ctx, creator, customCreator));
+    }
+
+    private static <T extends WithLabel> T readLabel(MappedByteBuffer buffer, int contactId, Context ctx, LabelCreator<T> creator,
+                                                     CustomLabelCreator<T> customCreator) {
+        String mainData = readString(buffer);
+        int labelId = buffer.getInt();
+        String customLabelName = readString(buffer);
+        T label;
+        if (customLabelName == null) {
+            label = creator.create(ctx, mainData, labelId);
+        } else {
+            label = customCreator.create(mainData, customLabelName);
+            label.setLabelId(labelId);
+        }
+        label.setContactId(contactId);
+        return label;
+    }
+
+    private static void writeStrings(DataOutputStream out, List<String> strings) throws IOException {
+        out.writeInt(strings.size());
+        for (String string : strings)
+            writeString(out, string);
+    }
+
+    private static void readStrings(MappedByteBuffer buffer, List<String> strings) {
+        int count = buffer.getInt();
+        for (int i = 0; i < count; i++)
+            strings.add(readString(buffer));
+    }
+
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        if (string == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = string.getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(MappedByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0)
+            return null;
+        if (length > buffer.remaining())
+            throw new BufferUnderflowException();
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null)
+            return;
+        try {
+            closeable.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private interface LabelCreator<T extends WithLabel> {
+        T create(Context ctx, String mainData, int labelId);
+    }
+
+    private interface CustomLabelCreator<T extends WithLabel> {
+        T create(String mainData, String labelName);
+    }
+}
@@ -0,0 +1,113 @@
+package com.tomash.androidcontacts.contactgetter.main.contactsGetter;
+
+import com.tomash.androidcontacts.contactgetter.entity.ContactData;
+import com.tomash.androidcontacts.contactgetter.interfaces.FieldsLoader;
+import com.tomash.androidcontacts.contactgetter.main.LoadStrategy;
+import com.tomash.androidcontacts.contactgetter.utils.IntObjectMap;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>
+ * Loads fields of contacts built with {@link LoadStrategy#LAZY}.
+ * </p>
+ * <p>
+ * Contacts are loaded in batches, if less contacts than {@link #READ_AHEAD} are requested, batch is filled with contacts
+ * that follow them in loaded list, so scrolling through the list runs one query per batch instead of one per contact.
+ * </p>
+ * <p>
+ * Loaded fields are copied with setters before loader of contact is cleared, so other threads either wait for batch
+ * or see contact with all fields.
+ * </p>
+ */
+class LazyFieldsLoader implements FieldsLoader {
+    private static final int READ_AHEAD = 50;
+    private final ContactsGetter mGetter;
+    private final List<? extends ContactData> mContacts;
+    private final IntObjectMap<Integer> mPositions;
+    private final boolean[] mLoaded;
+
+    LazyFieldsLoader(ContactsGetter getter, List<? extends ContactData> contacts) {
+        this.mGetter = getter;
+        // list returned to caller can be filtered or sorted later, so order of loading is kept in separate list
+        this.mContacts = new ArrayList<>(contacts);
+        this.mPositions = new IntObjectMap<>(contacts.size());
+        for (int i = 0; i < contacts.size(); i++)
+            mPositions.put(contacts.get(i).getContactId(), i);
+        this.mLoaded = new boolean[contacts.size()];
+    }
+
+    @Override
+    public synchronized void load(List<? extends ContactData> contacts) {
+        List<ContactData> batch = new ArrayList<>(Math.max(contacts.size(), READ_AHEAD));
+        int last = -1;
+        for (ContactData contact : contacts) {
+            int position = getPendingPosition(contact);
+            if (position == -1)
+                continue;
+            takePending(position, batch);
+            last = Math.max(last, position);
+            if (batch.size() == ContactsGetter.MAX_RESTRICTED_IDS)
+                loadBatch(batch);
+        }
+        if (last == -1)
+            return;
+        for (int position = last + 1; position < mContacts.size() && batch.size() < READ_AHEAD; position++) {
+            if (!mLoaded[position])
+                takePending(position, batch);
+        }
+        loadBatch(batch);
+    }
+
+    private int getPendingPosition(ContactData contact) {
+        if (contact.getFieldsLoader() != this)
+            return -1;
+        Integer position = mPositions.get(contact.getContactId());
+        if (position == null || mLoaded[position] || mContacts.get(position) != contact)
+            return -1;
+        return position;
+    }
+
+    /**
+     * Contact is marked loaded when it is taken to batch, so it is queried only once
+     */
+    private void takePending(int position, List<ContactData> batch) {
+        mLoaded[position] = true;
+        batch.add(mContacts.get(position));
+    }
+
+    private void loadBatch(List<ContactData> batch) {
+        if (batch.isEmpty())
+            return;
+        try {
+            IntObjectMap<ContactData> loaded = mGetter.loadFields(batch);
+            for (ContactData contact : batch)
+                copyFields(loaded.get(contact.getContactId()), contact);
+        } finally {
+            for (ContactData contact : batch)
+                contact.setFieldsLoader(null);
+            batch.clear();
+        }
+    }
+
+    private static void copyFields(ContactData from, ContactData to) {
+        to.setPhoneList(from.getPhoneList())
+            .setAddressesList(from.getAddressesList())
+            .setEmailList(from.getEmailList())
+            .setWebsitesList(from.getWebsitesList())
+            .setNote(from.getNote())
+            .setImAddressesList(from.getImAddressesList())
+            .setRelationsList(from.getRelationsList())
+            .setSpecialDatesList(from.getSpecialDatesList())
+            .setNickName(from.getNickName())
+            .setOrganization(from.getOrganization())
+            .setSipAddress(from.getSipAddress())
+            .setNameData(from.getNameData())
+            .setGroupList(from.getGroupList());
+        for (String accountName : from.getAccountName())
+            to.setAccountName(accountName);
+        for (String accountType : from.getAccountType())
+            to.setAccountType(accountType);
+    }
+}
@@ -0,0 +1,230 @@
+package com.tomash.androidcontacts.contactgetter.main.contactsGetter;
+
+import android.content.Context;
+import android.database.ContentObserver;
+import android.os.Handler;
+import android.os.Looper;
+import android.provider.ContactsContract;
+
+import com.tomash.androidcontacts.contactgetter.entity.ContactData;
+import com.tomash.androidcontacts.contactgetter.interfaces.ContactDataCreator;
+import com.tomash.androidcontacts.contactgetter.utils.IntObjectMap;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * <p>
+ * Query that keeps contacts of {@link ContactsGetterBuilder} up to date while it is started.
+ * </p>
+ * <p>
+ * Contacts are loaded once, after that provider changes are observed and only contacts changed or deleted
+ * since previous load are queried. Bursts of changes (e.g. sync) are coalesced into one refresh.
+ * </p>
+ * <p>
+ * Contacts are loaded on background thread, listeners are notified on main thread.
+ * </p>
+ * <p>
+ * AVAILABLE FROM 18 API
+ * </p>
+ *
+ * @param <T> type of contacts
+ */
+public class LiveContactsQuery<T extends ContactData> {
+    private static final long DEFAULT_DEBOUNCE_MILLIS = 500;
+    private static final long IDLE_THREAD_KEEP_ALIVE_SECONDS = 30;
+    private final Context mCtx;
+    private final ContactsGetterBuilder mBuilder;
+    private final ContactDataCreator<T> mCreator;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final List<Listener<T>> mListeners = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean mRefreshQueued = new AtomicBoolean();
+    private final ContentObserver mObserver = new ContentObserver(mMainHandler) {
+        @Override
+        public void onChange(boolean selfChange) {
+            scheduleRefresh();
+        }
+    };
+    private final Runnable mQueueRefresh = new Runnable() {
+        @Override
+        public void run() {
+            queueRefresh();
+        }
+    };
+    private long mDebounceMillis = DEFAULT_DEBOUNCE_MILLIS;
+    /**
+     * One executor is used for whole lifetime of query, so refresh started before {@link #stop()} always finishes
+     * before refresh of next {@link #start()}. Its thread is released when query is idle
+     */
+    private final ExecutorService mExecutor = new ThreadPoolExecutor(0, 1, IDLE_THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<Runnable>());
+    private boolean mStarted;
+    // accessed only on executor thread
+    private List<T> mContacts;
+    private long mWatermark;
+
+    LiveContactsQuery(Context ctx, ContactsGetterBuilder builder, ContactDataCreator<T> creator) {
+        this.mCtx = ctx;
+        this.mBuilder = builder;
+        this.mCreator = creator;
+    }
+
+    /**
+     * Sets time after the last change before contacts are refreshed, changes within this time are refreshed together
+     *
+     * @param debounceMillis delay in milliseconds, 500 by default
+     */
+    public LiveContactsQuery<T> setDebounceMillis(long debounceMillis) {
+        if (debounceMillis < 0)
+            throw new IllegalArgumentException("Debounce should not be negative");
+        this.mDebounceMillis = debounceMillis;
+        return this;
+    }
+
+    public LiveContactsQuery<T> addListener(Listener<T> listener) {
+        mListeners.add(listener);
+        return this;
+    }
+
+    public LiveContactsQuery<T> removeListener(Listener<T> listener) {
+        mListeners.remove(listener);
+        return this;
+    }
+
+    /**
+     * Loads contacts and starts observing changes, should be called on main thread
+     */
+    public synchronized void start() {
+        if (mStarted)
+            return;
+        mStarted = true;
+        mCtx.getContentResolver().registerContentObserver(ContactsContract.AUTHORITY_URI, true, mObserver);
+        queueRefresh();
+    }
+
+    /**
+     * Stops observing changes, loaded contacts are kept so next start refreshes only changes
+     */
+    public synchronized void stop() {
+        if (!mStarted)
+            return;
+        mStarted = false;
+        mCtx.getContentResolver().unregisterContentObserver(mObserver);
+        mMainHandler.removeCallbacks(mQueueRefresh);
+    }
+
+    public synchronized boolean isStarted() {
+        return mStarted;
+    }
+
+    private void scheduleRefresh() {
+        mMainHandler.removeCallbacks(mQueueRefresh);
+        mMainHandler.postDelayed(mQueueRefresh, mDebounceMillis);
+    }
+
+    /**
+     * Only one refresh waits in queue, changes made while it is running are picked up by the next one.
+     * Refresh that was queued before {@link #stop()} is skipped
+     */
+    private synchronized void queueRefresh() {
+        if (!mStarted || !mRefreshQueued.compareAndSet(false, true))
+            return;
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                mRefreshQueued.set(false);
+                if (!isStarted())
+                    return;
+                try {
+                    refresh();
+                } catch (final RuntimeException e) {
+                    notifyError(e);
+                }
+            }
+        });
+    }
+
+    private void refresh() {
+        if (mContacts == null) {
+            List<T> contacts = mBuilder.buildQueryList(mCreator);
+            mContacts = contacts;
+            mWatermark = ContactsGetter.getLatestModificationDate(contacts, 0);
+            notifyChanged(contacts, new ContactsDiff<>(new ArrayList<>(contacts), new ArrayList<T>(), new ArrayList<Integer>()));
+            return;
+        }
+        ContactsDelta<T> delta = mBuilder.buildQueryDelta(mWatermark, mCreator);
+        mWatermark = delta.getWatermark();
+        IntObjectMap<T> currentMap = new IntObjectMap<>(mContacts.size());
+        for (T contact : mContacts)
+            currentMap.put(contact.getContactId(), contact);
+        List<T> added = new ArrayList<>();
+        List<T> updated = new ArrayList<>();
+        for (T contact : delta.getChangedContacts()) {
+            T current = currentMap.get(contact.getContactId());
+            if (current == null)
+                added.add(contact);
+            else if (!isSameVersion(current, contact))
+                updated.add(contact);
+        }
+        List<Integer> removedIds = new ArrayList<>();
+        for (Integer id : delta.getDeletedContactIds()) {
+            if (currentMap.containsKey(id))
+                removedIds.add(id);
+        }
+        ContactsDiff<T> diff = new ContactsDiff<>(added, updated, removedIds);
+        if (diff.isEmpty())
+            return;
+        mContacts = mBuilder.mergeDelta(mContacts, delta, Collections.<Integer>emptyList());
+        notifyChanged(mContacts, diff);
+    }
+
+    /**
+     * Delta includes contacts changed at watermark, so contact that was already loaded is queried again
+     */
+    private static boolean isSameVersion(ContactData current, ContactData changed) {
+        return current.getLastModificationDate() == changed.getLastModificationDate() && current.equals(changed);
+    }
+
+    private void notifyChanged(List<T> contacts, final ContactsDiff<T> diff) {
+        final List<T> snapshot = Collections.unmodifiableList(new ArrayList<>(contacts));
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                for (Listener<T> listener : mListeners)
+                    listener.onContactsChanged(snapshot, diff);
+            }
+        });
+    }
+
+    private void notifyError(final Exception e) {
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                for (Listener<T> listener : mListeners)
+                    listener.onError(e);
+            }
+        });
+    }
+
+    public interface Listener<T extends ContactData> {
+        /**
+         * Called on main thread after contacts were loaded or changed
+         *
+         * @param contacts all current contacts of query
+         * @param diff     changes since previous call
+         */
+        void onContactsChanged(List<T> contacts, ContactsDiff<T> diff);
+
+        /**
+         * Called on main thread if contacts couldn't be loaded, e.g. permission was revoked
+         */
+        void onError(Exception e);
+    }
+}
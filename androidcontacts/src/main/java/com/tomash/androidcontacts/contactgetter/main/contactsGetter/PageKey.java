@@ -0,0 +1,36 @@
+package com.tomash.androidcontacts.contactgetter.main.contactsGetter;
+
+import com.tomash.androidcontacts.contactgetter.entity.ContactData;
+
+/**
+ * <p>
+ * Position of contact in sorted contacts list, used to load the page that follows it.
+ * </p>
+ * <p>
+ * Display name is used only with sorting by display name, contact id is used as tie-breaker.
+ * </p>
+ */
+public class PageKey {
+    private final String displayName;
+    private final int contactId;
+
+    public PageKey(String displayName, int contactId) {
+        this.displayName = displayName;
+        this.contactId = contactId;
+    }
+
+    /**
+     * @return key pointing to position of this contact
+     */
+    public static PageKey of(ContactData contactData) {
+        return new PageKey(contactData.getCompositeName(), contactData.getContactId());
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    public int getContactId() {
+        return contactId;
+    }
+}
@@ -0,0 +1,81 @@
+package com.tomash.androidcontacts.contactgetter.main.contactsGetter;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteException;
+import android.provider.ContactsContract;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>
+ * Views of contacts provider that restriction subqueries are written against.
+ * </p>
+ * <p>
+ * Views are internal tables of AOSP contacts provider and are not a part of {@link ContactsContract}, so provider of OEM
+ * or future Android version may not have them. Support is probed once per process, without it restrictions are built
+ * from ids queried through public uris.
+ * </p>
+ */
+final class ProviderViews {
+    // view behind Contacts.CONTENT_URI
+    static final String CONTACTS_VIEW = "view_contacts";
+    // view behind Data.CONTENT_URI
+    static final String DATA_VIEW = "view_data";
+    private static volatile Boolean sSupported;
+
+    private ProviderViews() {
+    }
+
+    static boolean isSupported(ContentResolver resolver) {
+        Boolean supported = sSupported;
+        if (supported != null)
+            return supported;
+        Cursor cursor;
+        try {
+            cursor = resolver.query(ContactsContract.Data.CONTENT_URI, new String[]{ContactsContract.Data.CONTACT_ID},
+                ContactsContract.Data.CONTACT_ID + " IN (SELECT " + ContactsContract.Contacts._ID + " FROM " + CONTACTS_VIEW
+                    + " WHERE 0) OR " + ContactsContract.Data.CONTACT_ID + " IN (SELECT " + ContactsContract.Data.CONTACT_ID
+                    + " FROM " + DATA_VIEW + " WHERE 0)", null, null);
+        } catch (SQLiteException | IllegalArgumentException e) {
+            sSupported = Boolean.FALSE;
+            return false;
+        }
+        // provider is not available, so nothing is known about it yet
+        if (cursor == null)
+            return true;
+        cursor.close();
+        sSupported = Boolean.TRUE;
+        return true;
+    }
+
+    /**
+     * @return ids read from column of cursor, cursor is closed
+     */
+    static List<Integer> readIds(Cursor cursor, String idColumn) {
+        List<Integer> ids = new ArrayList<>();
+        if (cursor == null)
+            return ids;
+        int idIndex = cursor.getColumnIndex(idColumn);
+        while (idIndex >= 0 && cursor.moveToNext())
+            ids.add(cursor.getInt(idIndex));
+        cursor.close();
+        return ids;
+    }
+
+    /**
+     * Ids are inlined as literals, so condition doesn't use selection arguments
+     *
+     * @return condition that column is one of ids
+     */
+    static String getInSelection(String column, List<Integer> ids) {
+        StringBuilder selection = new StringBuilder(column).append(" IN (");
+        for (int i = 0; i < ids.size(); i++) {
+            if (i != 0)
+                selection.append(',');
+            selection.append(ids.get(i));
+        }
+        return selection.append(')').toString();
+    }
+}
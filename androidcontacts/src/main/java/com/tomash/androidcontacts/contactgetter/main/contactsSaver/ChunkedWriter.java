@@ -0,0 +1,187 @@
+package com.tomash.androidcontacts.contactgetter.main.contactsSaver;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.OperationApplicationException;
+import android.net.Uri;
+import android.os.RemoteException;
+import android.provider.ContactsContract;
+
+import com.tomash.androidcontacts.contactgetter.interfaces.SaveProgressListener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ * Writes operations of many contacts with chunked {@link ContentResolver#applyBatch(String, ArrayList)} calls.
+ * </p>
+ * <p>
+ * Chunk is limited by estimated parcel size and operations count, so big imports stay below binder transaction limit
+ * and provider yields between chunks. Operations of one contact are split only if there are more of them than fit into one chunk.
+ * </p>
+ * <p>
+ * Only first operation of every chunk allows provider to yield, so every chunk is committed in one transaction
+ * and other readers get the database between chunks.
+ * </p>
+ */
+class ChunkedWriter {
+    // binder buffer of 1 MB is shared by all transactions of process, so chunk takes only part of it
+    static final int MAX_CHUNK_BYTES = 256 * 1024;
+    // contacts provider rejects more than 500 operations between yield points
+    static final int MAX_CHUNK_OPERATIONS = 400;
+    private static final int OPERATION_BYTES = 128;
+    private static final int VALUE_BYTES = 16;
+    private final ContentResolver mResolver;
+    private final SaveProgressListener mProgressListener;
+    private final int mTotalContacts;
+    private final ArrayList<ContentProviderOperation> mChunk = new ArrayList<>();
+    private final List<ContentProviderResult> mResults = new ArrayList<>();
+    private int mChunkBytes;
+    private int mChunkContacts;
+    private int mWrittenContacts;
+    private ChunkListener mChunkListener;
+
+    /**
+     * @param progressListener notified after every written chunk, can be null
+     * @param totalContacts    count of contacts that will be added, reported to listener
+     */
+    ChunkedWriter(ContentResolver resolver, SaveProgressListener progressListener, int totalContacts) {
+        this.mResolver = resolver;
+        this.mProgressListener = progressListener;
+        this.mTotalContacts = totalContacts;
+    }
+
+    /**
+     * @param chunkListener notified after every written chunk with contacts that were written in it
+     */
+    ChunkedWriter setChunkListener(ChunkListener chunkListener) {
+        this.mChunkListener = chunkListener;
+        return this;
+    }
+
+    /**
+     * @return results of all written operations in order they were added
+     */
+    List<ContentProviderResult> getResults() {
+        return mResults;
+    }
+
+    /**
+     * Adds insert operations of one contact, current chunk is written first if they don't fit into it
+     *
+     * @param uri    uri of every insert
+     * @param values values of inserted rows
+     */
+    void addContact(Uri uri, List<ContentValues> values) throws RemoteException, OperationApplicationException {
+        int bytes = estimateBytes(values);
+        makeRoom(bytes, values.size());
+        for (int i = 0; i < values.size(); i++) {
+            if (!mChunk.isEmpty() && mChunk.size() == MAX_CHUNK_OPERATIONS)
+                writeChunk();
+            mChunk.add(ContentProviderOperation.newInsert(uri)
+                .withValues(values.get(i))
+                .withYieldAllowed(mChunk.isEmpty())
+                .build());
+        }
+        mChunkBytes += bytes;
+        mChunkContacts++;
+    }
+
+    /**
+     * <p>
+     * Adds raw contact together with its data rows, data rows reference raw contact id by its index in chunk
+     * </p>
+     * <p>
+     * Contact is never split, so it is saved either with all its data or not at all
+     * </p>
+     *
+     * @param rawContactValues values of raw contact
+     * @param dataValues       values of data rows, {@link ContactsContract.Data#RAW_CONTACT_ID} is replaced with reference to raw contact
+     * @return index of raw contact insert in results of {@link #finish()}
+     */
+    int addContact(ContentValues rawContactValues, List<ContentValues> dataValues) throws RemoteException, OperationApplicationException {
+        int bytes = estimateBytes(rawContactValues) + estimateBytes(dataValues);
+        makeRoom(bytes, dataValues.size() + 1);
+        int rawContactIndex = mChunk.size();
+        // yield point inside chunk would let provider commit part of it
+        mChunk.add(ContentProviderOperation.newInsert(ContactsContract.RawContacts.CONTENT_URI)
+            .withValues(rawContactValues)
+            .withYieldAllowed(rawContactIndex == 0)
+            .build());
+        for (ContentValues values : dataValues)
+            mChunk.add(ContentProviderOperation.newInsert(ContactsContract.Data.CONTENT_URI)
+                .withValues(values)
+                .withValueBackReference(ContactsContract.Data.RAW_CONTACT_ID, rawContactIndex)
+                .build());
+        mChunkBytes += bytes;
+        mChunkContacts++;
+        return mResults.size() + rawContactIndex;
+    }
+
+    private void makeRoom(int bytes, int operations) throws RemoteException, OperationApplicationException {
+        if (!mChunk.isEmpty() && (mChunkBytes + bytes > MAX_CHUNK_BYTES || mChunk.size() + operations > MAX_CHUNK_OPERATIONS))
+            writeChunk();
+    }
+
+    /**
+     * Writes last chunk
+     *
+     * @return results of all operations in order they were added
+     */
+    List<ContentProviderResult> finish() throws RemoteException, OperationApplicationException {
+        if (!mChunk.isEmpty() || mChunkContacts != 0)
+            writeChunk();
+        return mResults;
+    }
+
+    private void writeChunk() throws RemoteException, OperationApplicationException {
+        if (!mChunk.isEmpty())
+            mResults.addAll(Arrays.asList(mResolver.applyBatch(ContactsContract.AUTHORITY, mChunk)));
+        int firstContact = mWrittenContacts;
+        int contactCount = mChunkContacts;
+        mWrittenContacts += mChunkContacts;
+        mChunk.clear();
+        mChunkBytes = 0;
+        mChunkContacts = 0;
+        if (mChunkListener != null && contactCount != 0)
+            mChunkListener.onChunkWritten(firstContact, contactCount);
+        if (mProgressListener != null)
+            mProgressListener.onProgress(mWrittenContacts, mTotalContacts);
+    }
+
+    private static int estimateBytes(List<ContentValues> values) {
+        int bytes = 0;
+        for (ContentValues rowValues : values)
+            bytes += estimateBytes(rowValues);
+        return bytes;
+    }
+
+    /**
+     * Rough size of values in parcel, strings are written as UTF-16
+     */
+    static int estimateBytes(ContentValues values) {
+        int bytes = OPERATION_BYTES;
+        for (Map.Entry<String, Object> entry : values.valueSet()) {
+            bytes += VALUE_BYTES + entry.getKey().length() * 2;
+            Object value = entry.getValue();
+            if (value instanceof String)
+                bytes += ((String) value).length() * 2;
+            else if (value instanceof byte[])
+                bytes += ((byte[]) value).length;
+        }
+        return bytes;
+    }
+
+    interface ChunkListener {
+        /**
+         * @param firstContact index of first contact written in chunk
+         * @param contactCount count of contacts written in chunk
+         */
+        void onChunkWritten(int firstContact, int contactCount);
+    }
+}
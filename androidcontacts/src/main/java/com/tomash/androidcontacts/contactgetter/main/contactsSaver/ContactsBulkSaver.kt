@@ -0,0 +1,120 @@
+package com.tomash.androidcontacts.contactgetter.main.contactsSaver
+
+import android.content.ContentResolver
+import android.content.Context
+import android.content.OperationApplicationException
+import android.os.TransactionTooLargeException
+import com.tomash.androidcontacts.contactgetter.acresult.ACResult
+import com.tomash.androidcontacts.contactgetter.acresult.ACResult.Companion.completed
+import com.tomash.androidcontacts.contactgetter.acresult.ACResult.Companion.failure
+import com.tomash.androidcontacts.contactgetter.acresult.ACResult.Companion.result
+import com.tomash.androidcontacts.contactgetter.entity.ContactData
+
+private class ContactsBulkSaverImpl(context: Context) : ContactsBulkSaver {
+    private val resolver: ContentResolver = context.contentResolver
+
+    override fun saveContacts(contacts: List<ContactData>,
+        func: ACResult<Map<Int, Int>, Map<Int, Exception>>.() -> Unit) {
+        if (contacts.isEmpty()) {
+            return func.completed()
+        }
+        val session = SaveSession(resolver, contacts, func)
+        session.save(0, contacts.size)
+        if (session.errors.isEmpty()) {
+            func.completed()
+        } else {
+            func.failure(session.errors)
+        }
+    }
+}
+
+private class SaveSession(private val resolver: ContentResolver, private val contacts: List<ContactData>,
+    private val func: ACResult<Map<Int, Int>, Map<Int, Exception>>.() -> Unit) {
+    val errors = LinkedHashMap<Int, Exception>()
+    private var fatalError: Exception? = null
+
+    /**
+     * Contacts that were not saved before failure are split in halves and saved again,
+     * so the failing contact ends up alone in its batch and all other contacts are saved.
+     * Failure that is not caused by saved contacts fails all remaining contacts at once
+     */
+    fun save(from: Int, to: Int) {
+        fatalError?.let { return fail(from, to, it) }
+        var savedTo = from
+        try {
+            ContactsSaver(resolver).insertContactsAtomically(contacts.subList(from, to)) { firstIndex, ids ->
+                savedTo = from + firstIndex + ids.size
+                func.result(ids.indices.associate { from + firstIndex + it to ids[it] })
+            }
+        } catch (exception: Exception) {
+            when {
+                savedTo == to -> return
+                !exception.isCausedByContacts() -> {
+                    fatalError = exception
+                    fail(savedTo, to, exception)
+                }
+                to - savedTo == 1 -> errors[savedTo] = exception
+                else -> {
+                    val middle = (savedTo + to) / 2
+                    save(savedTo, middle)
+                    save(middle, to)
+                }
+            }
+        }
+    }
+
+    private fun fail(from: Int, to: Int, exception: Exception) {
+        for (index in from until to) {
+            errors[index] = exception
+        }
+    }
+
+    /**
+     * Provider rejects invalid values of operation with [IllegalArgumentException],
+     * failed operation with [OperationApplicationException] and too big chunk with [TransactionTooLargeException]
+     */
+    private fun Exception.isCausedByContacts(): Boolean {
+        val error = if (this is IllegalStateException && cause != null) cause else this
+        return error is OperationApplicationException || error is TransactionTooLargeException ||
+            error is IllegalArgumentException
+    }
+}
+
+/**
+ * Used to save big lists of [ContactData] to phone.
+ * Contacts are saved with their data in chunks, every chunk is one transaction.
+ * If chunk fails, its contacts are saved again in smaller batches, so only contacts
+ * that can't be saved are reported as failed. Contacts are identified by their index in saved list.
+ */
+interface ContactsBulkSaver {
+
+    /**
+     * Saves list of [ContactData]
+     * @param func returns indexes of saved [ContactData] with their ids in [ACResult.onResult] after every written chunk,
+     * so it can be used to track progress, and indexes of not saved [ContactData] with corresponding error in [ACResult.onFailure]
+     *
+     * **example**:
+     * ```
+     * saveContacts(contacts) {
+     *      onResult { savedChunk ->
+     *      // indexes of contacts saved with last chunk mapped to their ids
+     *      }
+     *      onFailure { notSavedErrMap ->
+     *      // indexes of contacts that were not saved mapped to their errors
+     *      }
+     *      onCompleted {
+     *      // all contacts were saved
+     *      }
+     *      doFinally {
+     *      // called anyway
+     *      }
+     * }
+     * ```
+     */
+    fun saveContacts(contacts: List<ContactData>,
+        func: ACResult<Map<Int, Int>, Map<Int, Exception>>.() -> Unit = {})
+
+    companion object {
+        operator fun invoke(context: Context): ContactsBulkSaver = ContactsBulkSaverImpl(context)
+    }
+}
@@ -1,40 +1,130 @@
 package com.tomash.androidcontacts.contactgetter.main.contactsSaver;
 
 import android.content.*;
-import android.graphics.Bitmap;
-import android.net.Uri;
+import android.os.RemoteException;
 import android.provider.ContactsContract;
 import com.tomash.androidcontacts.contactgetter.entity.*;
+import com.tomash.androidcontacts.contactgetter.interfaces.SaveProgressListener;
 import com.tomash.androidcontacts.contactgetter.interfaces.WithLabel;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.FileOutputStream;
-import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Future;
 
 class ContactsSaver {
     private ContentResolver mResolver;
+    private SaveProgressListener mProgressListener;
+    private boolean mAtomicInserts;
 
     public ContactsSaver(ContentResolver resolver) {
         mResolver = resolver;
     }
 
-    public int[] insertContacts(List<ContactData> contactDataList) {
-        ArrayList<ContentValues> cvList = new ArrayList<>(100);
+    ContactsSaver setProgressListener(SaveProgressListener progressListener) {
+        mProgressListener = progressListener;
+        return this;
+    }
+
+    /**
+     * Inserts raw contacts and their data in one batch, data rows reference raw contacts with back references
+     */
+    ContactsSaver setAtomicInserts(boolean atomicInserts) {
+        mAtomicInserts = atomicInserts;
+        return this;
+    }
 
+    public int[] insertContacts(final List<ContactData> contactDataList) {
+        if (mAtomicInserts)
+            return insertContactsAtomically(contactDataList);
         ContentProviderResult[] results = createContacts(contactDataList);
-        int[] ids = new int[results.length];
-        for (int i = 0; i < results.length; i++) {
-            int id = Integer.parseInt(results[i].uri.getLastPathSegment());
-            generateInsertOperations(cvList, contactDataList.get(i), id);
-            ids[i] = id;
+        final int[] ids = new int[results.length];
+        final List<Future<byte[]>> photos = new ArrayList<>(results.length);
+        final PhotoEncoder photoEncoder = new PhotoEncoder(mResolver);
+        ChunkedWriter dataWriter = new ChunkedWriter(mResolver, mProgressListener, contactDataList.size())
+            .setChunkListener(new ChunkedWriter.ChunkListener() {
+                @Override
+                public void onChunkWritten(int firstContact, int contactCount) {
+                    for (int i = firstContact; i < firstContact + contactCount; i++) {
+                        photoEncoder.write(ids[i], contactDataList.get(i), photos.get(i));
+                        photos.set(i, null);
+                    }
+                }
+            });
+        try {
+            for (int i = 0; i < results.length; i++) {
+                int id = Integer.parseInt(results[i].uri.getLastPathSegment());
+                ArrayList<ContentValues> cvList = new ArrayList<>(8);
+                generateInsertOperations(cvList, contactDataList.get(i), id);
+                ids[i] = id;
+                photos.add(photoEncoder.encode(contactDataList.get(i)));
+                dataWriter.addContact(ContactsContract.Data.CONTENT_URI, cvList);
+            }
+            dataWriter.finish();
+        } catch (RemoteException | OperationApplicationException e) {
+            throw new IllegalStateException("Failed to save contacts data", e);
+        } finally {
+            photoEncoder.shutdown();
         }
-        mResolver.bulkInsert(ContactsContract.Data.CONTENT_URI, cvList.toArray(new ContentValues[cvList.size()]));
         return ids;
     }
 
+    private int[] insertContactsAtomically(List<ContactData> contactDataList) {
+        final int[] ids = new int[contactDataList.size()];
+        insertContactsAtomically(contactDataList, new SavedContactsListener() {
+            @Override
+            public void onContactsSaved(int firstIndex, int[] savedIds) {
+                System.arraycopy(savedIds, 0, ids, firstIndex, savedIds.length);
+            }
+        });
+        return ids;
+    }
+
+    /**
+     * <p>
+     * Every chunk is one transaction, so contact is never saved without its data. Photos are encoded while contacts are written
+     * and saved after their chunk is written
+     * </p>
+     * <p>
+     * If saving fails, contacts reported to listener before are saved and all following contacts are not
+     * </p>
+     *
+     * @param listener notified after every written chunk with ids of its contacts
+     */
+    void insertContactsAtomically(final List<ContactData> contactDataList, final SavedContactsListener listener) {
+        final ChunkedWriter writer = new ChunkedWriter(mResolver, mProgressListener, contactDataList.size());
+        final int[] resultIndexes = new int[contactDataList.size()];
+        final List<Future<byte[]>> photos = new ArrayList<>(contactDataList.size());
+        final PhotoEncoder photoEncoder = new PhotoEncoder(mResolver);
+        writer.setChunkListener(new ChunkedWriter.ChunkListener() {
+            @Override
+            public void onChunkWritten(int firstContact, int contactCount) {
+                int[] chunkIds = new int[contactCount];
+                for (int i = 0; i < contactCount; i++) {
+                    chunkIds[i] = (int) ContentUris.parseId(writer.getResults().get(resultIndexes[firstContact + i]).uri);
+                    photoEncoder.write(chunkIds[i], contactDataList.get(firstContact + i), photos.get(firstContact + i));
+                    photos.set(firstContact + i, null);
+                }
+                listener.onContactsSaved(firstContact, chunkIds);
+            }
+        });
+        try {
+            for (int i = 0; i < contactDataList.size(); i++) {
+                ContactData contactData = contactDataList.get(i);
+                ArrayList<ContentValues> cvList = new ArrayList<>(8);
+                // raw contact id is resolved from back reference
+                generateInsertOperations(cvList, contactData, 0);
+                photos.add(photoEncoder.encode(contactData));
+                resultIndexes[i] = writer.addContact(getRawContactCV(contactData), cvList);
+            }
+            writer.finish();
+        } catch (RemoteException | OperationApplicationException e) {
+            throw new IllegalStateException("Failed to save contacts", e);
+        } finally {
+            photoEncoder.shutdown();
+        }
+    }
+
     private void generateInsertOperations(List<ContentValues> contentValuesList, ContactData contactData, int id) {
         for (PhoneNumber number : contactData.getPhoneList()) {
             contentValuesList.add(getPhonesCV(number, id));
@@ -67,43 +157,6 @@ class ContactsSaver {
         Organization currentOrganization = contactData.getOrganization();
         if (!currentOrganization.getName().isEmpty() || !currentOrganization.getTitle().isEmpty())
             contentValuesList.add(getOrganizationTypeCV(currentOrganization, id));
-        saveUpdatedPhoto(id, contactData);
-    }
-
-    /**
-     * Save updated photo for the specified raw-contact.
-     */
-    private void saveUpdatedPhoto(long rawContactId, ContactData contactData) {
-        try {
-            InputStream inputStream;
-            if (contactData.getUpdatedPhotoUri() != null) {
-                inputStream = mResolver.openInputStream(contactData.getUpdatedPhotoUri());
-                contactData.setUpdatedPhotoUri(null);
-            } else if (contactData.getUpdatedBitmap() != null) {
-                ByteArrayOutputStream bos = new ByteArrayOutputStream();
-                contactData.getUpdatedBitmap().compress(Bitmap.CompressFormat.PNG, 0 /*ignored for PNG*/, bos);
-                byte[] bitmapdata = bos.toByteArray();
-                inputStream = new ByteArrayInputStream(bitmapdata);
-                contactData.setUpdatedBitmap(null);
-            } else {
-                return;
-            }
-
-            final Uri outputUri = Uri.withAppendedPath(
-                ContentUris.withAppendedId(ContactsContract.RawContacts.CONTENT_URI, rawContactId),
-                ContactsContract.RawContacts.DisplayPhoto.CONTENT_DIRECTORY);
-
-            FileOutputStream outputStream;
-            outputStream = mResolver
-                .openAssetFileDescriptor(outputUri, "rw").createOutputStream();
-            final byte[] buffer = new byte[16 * 1024];
-            int length;
-            while ((length = inputStream.read(buffer)) > 0)
-                outputStream.write(buffer, 0, length);
-            outputStream.close();
-            inputStream.close();
-        } catch (Exception ignored) {
-        }
     }
 
     private ContentValues getWithLabelCV(String contentType, WithLabel withLabel, int id) {
@@ -184,21 +237,37 @@ class ContactsSaver {
     }
 
     private ContentProviderResult[] createContacts(List<ContactData> contacts) {
-        ContentProviderResult[] results = null;
-        ArrayList<ContentProviderOperation> op_list = new ArrayList<>();
-        for (int i = 0; i < contacts.size(); i++) {
-            ContactData contactData = contacts.get(i);
-            op_list.add(ContentProviderOperation.newInsert(ContactsContract.RawContacts.CONTENT_URI)
-                .withValue(ContactsContract.RawContacts.ACCOUNT_TYPE, contactData.getAccountType())
-                .withValue(ContactsContract.RawContacts.ACCOUNT_NAME, contactData.getAccountName())
-                .withValue(ContactsContract.RawContacts.STARRED, contactData.isFavorite() ? 1 : 0)
-                .build());
-        }
+        ContentProviderResult[] results;
+        ChunkedWriter writer = new ChunkedWriter(mResolver, null, contacts.size());
         try {
-            results = mResolver.applyBatch(ContactsContract.AUTHORITY, op_list);
-        } catch (Exception ignored) {
+            for (int i = 0; i < contacts.size(); i++)
+                writer.addContact(ContactsContract.RawContacts.CONTENT_URI, Collections.singletonList(getRawContactCV(contacts.get(i))));
+            List<ContentProviderResult> resultList = writer.finish();
+            results = resultList.toArray(new ContentProviderResult[resultList.size()]);
+        } catch (RemoteException | OperationApplicationException e) {
+            throw new IllegalStateException("Failed to create contacts", e);
         }
         return results;
     }
 
+    private ContentValues getRawContactCV(ContactData contactData) {
+        ContentValues contentValues = new ContentValues();
+        // raw contact belongs to one account, null account is local one
+        contentValues.put(ContactsContract.RawContacts.ACCOUNT_TYPE, firstOrNull(contactData.getAccountType()));
+        contentValues.put(ContactsContract.RawContacts.ACCOUNT_NAME, firstOrNull(contactData.getAccountName()));
+        contentValues.put(ContactsContract.RawContacts.STARRED, contactData.isFavorite() ? 1 : 0);
+        return contentValues;
+    }
+
+    private static String firstOrNull(List<String> values) {
+        return values.isEmpty() ? null : values.get(0);
+    }
+
+    interface SavedContactsListener {
+        /**
+         * @param firstIndex index of first saved contact in saved list
+         * @param ids        ids of saved contacts
+         */
+        void onContactsSaved(int firstIndex, int[] ids);
+    }
 }
@@ -2,17 +2,54 @@ package com.tomash.androidcontacts.contactgetter.main.contactsSaver;
 
 import android.content.Context;
 import com.tomash.androidcontacts.contactgetter.entity.ContactData;
+import com.tomash.androidcontacts.contactgetter.interfaces.SaveProgressListener;
 
 import java.util.Collections;
 import java.util.List;
 
 public class ContactsSaverBuilder {
     private Context mCtx;
+    private SaveProgressListener mProgressListener;
+    private boolean mAtomicInserts;
 
     public ContactsSaverBuilder(Context mCtx) {
         this.mCtx = mCtx;
     }
 
+    /**
+     * <p>
+     * Sets listener notified after every chunk of contacts is written
+     * </p>
+     * <p>
+     * Contacts are written in chunks that fit into one binder transaction, so big lists are saved with several transactions
+     * </p>
+     *
+     * @param progressListener listener called on saving thread
+     */
+    public ContactsSaverBuilder setProgressListener(SaveProgressListener progressListener) {
+        this.mProgressListener = progressListener;
+        return this;
+    }
+
+    /**
+     * <p>
+     * Sets whether raw contacts are inserted in the same batch as their data
+     * </p>
+     * <p>
+     * Data rows reference raw contact inserted in the same batch, so every chunk of contacts is written with one transaction
+     * and contact is never left without its data if saving fails
+     * </p>
+     * <p>
+     * By default raw contacts are inserted first and their data after that
+     * </p>
+     *
+     * @param atomicInserts true to insert contacts with their data in one batch
+     */
+    public ContactsSaverBuilder setAtomicInserts(boolean atomicInserts) {
+        this.mAtomicInserts = atomicInserts;
+        return this;
+    }
+
     /**
      * Saves to phone database list of contacts
      *
@@ -21,6 +58,8 @@ public class ContactsSaverBuilder {
      */
     public int[] saveContactsList(List<ContactData> contactDataList) {
         return new ContactsSaver(mCtx.getContentResolver())
+            .setProgressListener(mProgressListener)
+            .setAtomicInserts(mAtomicInserts)
             .insertContacts(contactDataList);
     }
 
@@ -33,6 +72,8 @@ public class ContactsSaverBuilder {
     public int saveContact(ContactData contactData) {
         List<ContactData> contactDatas = Collections.singletonList(contactData);
         int[] ids = new ContactsSaver(mCtx.getContentResolver())
+            .setProgressListener(mProgressListener)
+            .setAtomicInserts(mAtomicInserts)
             .insertContacts(contactDatas);
         return ids[0];
     }
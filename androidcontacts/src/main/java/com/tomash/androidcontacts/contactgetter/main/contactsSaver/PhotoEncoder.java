@@ -0,0 +1,189 @@
+package com.tomash.androidcontacts.contactgetter.main.contactsSaver;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.res.AssetFileDescriptor;
+import android.database.Cursor;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.net.Uri;
+import android.provider.ContactsContract;
+
+import com.tomash.androidcontacts.contactgetter.entity.ContactData;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ * Prepares photos of saved contacts on worker threads while contacts are written.
+ * </p>
+ * <p>
+ * Photo is decoded with sampling, scaled down to display photo size of contacts provider and encoded to JPEG,
+ * so only bytes provider keeps anyway are written to it. Encoded photo is written after raw contact is committed.
+ * </p>
+ * <p>
+ * Pool has bounded queue, if workers fall behind, saving thread encodes photos itself.
+ * </p>
+ */
+class PhotoEncoder {
+    private static final int MAX_THREADS = 4;
+    private static final int QUEUE_SIZE = 16;
+    // size of display photos of contacts provider before it was queryable
+    private static final int DEFAULT_DISPLAY_MAX_DIM = 720;
+    // provider recompresses display photos to JPEG, so high quality only avoids visible double compression
+    private static final int JPEG_QUALITY = 95;
+    private final ContentResolver mResolver;
+    private ThreadPoolExecutor mExecutor;
+    private int mDisplayMaxDim;
+
+    PhotoEncoder(ContentResolver resolver) {
+        this.mResolver = resolver;
+    }
+
+    /**
+     * Starts encoding of photo that was set to contact, photo fields are kept until photo is written,
+     * so contact that failed to save still has its photo
+     *
+     * @return future of encoded photo or null if contact has no photo to save
+     */
+    Future<byte[]> encode(ContactData contactData) {
+        final Uri photoUri = contactData.getUpdatedPhotoUri();
+        final Bitmap bitmap = contactData.getUpdatedBitmap();
+        if (photoUri == null && bitmap == null)
+            return null;
+        final int maxDim = getDisplayMaxDim();
+        FutureTask<byte[]> task = new FutureTask<>(new Callable<byte[]>() {
+            @Override
+            public byte[] call() throws IOException {
+                return photoUri != null ? encode(decode(photoUri, maxDim), maxDim, true) : encode(bitmap, maxDim, false);
+            }
+        });
+        getExecutor().execute(task);
+        return task;
+    }
+
+    /**
+     * Writes encoded photo to raw contact and clears photo fields of contact, photo that failed to encode or write is skipped
+     */
+    void write(long rawContactId, ContactData contactData, Future<byte[]> photo) {
+        if (photo == null)
+            return;
+        contactData.setUpdatedPhotoUri(null);
+        contactData.setUpdatedBitmap(null);
+        try {
+            byte[] bytes = photo.get();
+            if (bytes == null)
+                return;
+            Uri outputUri = Uri.withAppendedPath(
+                ContentUris.withAppendedId(ContactsContract.RawContacts.CONTENT_URI, rawContactId),
+                ContactsContract.RawContacts.DisplayPhoto.CONTENT_DIRECTORY);
+            AssetFileDescriptor descriptor = mResolver.openAssetFileDescriptor(outputUri, "rw");
+            if (descriptor == null)
+                return;
+            FileOutputStream outputStream = descriptor.createOutputStream();
+            try {
+                outputStream.write(bytes);
+            } finally {
+                outputStream.close();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception ignored) {
+            // one bad photo must not fail saving of other contacts
+        }
+    }
+
+    /**
+     * Stops worker threads, photos that were already started are still encoded
+     */
+    void shutdown() {
+        if (mExecutor != null)
+            mExecutor.shutdown();
+    }
+
+    private ThreadPoolExecutor getExecutor() {
+        if (mExecutor == null) {
+            int threads = Math.max(1, Math.min(MAX_THREADS, Runtime.getRuntime().availableProcessors()));
+            mExecutor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(QUEUE_SIZE), new ThreadPoolExecutor.CallerRunsPolicy());
+        }
+        return mExecutor;
+    }
+
+    private int getDisplayMaxDim() {
+        if (mDisplayMaxDim != 0)
+            return mDisplayMaxDim;
+        mDisplayMaxDim = DEFAULT_DISPLAY_MAX_DIM;
+        Cursor cursor = mResolver.query(ContactsContract.DisplayPhoto.CONTENT_MAX_DIMENSIONS_URI,
+            new String[]{ContactsContract.DisplayPhoto.DISPLAY_MAX_DIM}, null, null, null);
+        if (cursor == null)
+            return mDisplayMaxDim;
+        try {
+            int index = cursor.getColumnIndex(ContactsContract.DisplayPhoto.DISPLAY_MAX_DIM);
+            if (index >= 0 && cursor.moveToFirst() && cursor.getInt(index) > 0)
+                mDisplayMaxDim = cursor.getInt(index);
+        } finally {
+            cursor.close();
+        }
+        return mDisplayMaxDim;
+    }
+
+    /**
+     * Decodes photo sampled down to the smallest size that is still not less than display photo size
+     */
+    private Bitmap decode(Uri photoUri, int maxDim) throws IOException {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        decodeStream(photoUri, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0)
+            return null;
+        int sampleSize = 1;
+        while (Math.max(options.outWidth, options.outHeight) / (sampleSize * 2) >= maxDim)
+            sampleSize *= 2;
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize;
+        return decodeStream(photoUri, options);
+    }
+
+    private Bitmap decodeStream(Uri photoUri, BitmapFactory.Options options) throws IOException {
+        InputStream inputStream = mResolver.openInputStream(photoUri);
+        if (inputStream == null)
+            return null;
+        try {
+            return BitmapFactory.decodeStream(inputStream, null, options);
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    /**
+     * @param ownsBitmap bitmap was decoded here, so it can be recycled after encoding
+     */
+    private static byte[] encode(Bitmap bitmap, int maxDim, boolean ownsBitmap) {
+        if (bitmap == null)
+            return null;
+        Bitmap scaled = bitmap;
+        int largerSide = Math.max(bitmap.getWidth(), bitmap.getHeight());
+        if (largerSide > maxDim) {
+            float scale = (float) maxDim / largerSide;
+            scaled = Bitmap.createScaledBitmap(bitmap, Math.max(1, Math.round(bitmap.getWidth() * scale)),
+                Math.max(1, Math.round(bitmap.getHeight() * scale)), true);
+        }
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        scaled.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, outputStream);
+        if (scaled != bitmap)
+            scaled.recycle();
+        if (ownsBitmap)
+            bitmap.recycle();
+        return outputStream.toByteArray();
+    }
+}
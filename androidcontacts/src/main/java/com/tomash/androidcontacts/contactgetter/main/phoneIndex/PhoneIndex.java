@@ -0,0 +1,175 @@
+package com.tomash.androidcontacts.contactgetter.main.phoneIndex;
+
+import com.tomash.androidcontacts.contactgetter.entity.ContactData;
+import com.tomash.androidcontacts.contactgetter.entity.PhoneNumber;
+import com.tomash.androidcontacts.contactgetter.main.contactsGetter.ContactsDelta;
+import com.tomash.androidcontacts.contactgetter.utils.IntObjectMap;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * <p>
+ * Index of phone numbers by their digits, used to find contacts by phone number without scanning all contacts.
+ * </p>
+ * <p>
+ * Numbers are normalized to digits only, so "+1 (555) 010-99" and "1555 01099" are the same number.
+ * Exact lookup takes constant time, lookup by suffix (e.g. last digits of incoming number without country code) takes logarithmic time.
+ * </p>
+ * <p>
+ * Index can be updated incrementally with changed contacts, all methods are thread safe.
+ * </p>
+ */
+public class PhoneIndex {
+    private final Map<String, List<Integer>> mExactMap = new HashMap<>();
+    private final TreeMap<String, List<Integer>> mReversedMap = new TreeMap<>();
+    private final IntObjectMap<List<String>> mNumbersByContact = new IntObjectMap<>();
+
+    /**
+     * Adds number of contact to index
+     *
+     * @param contactId id of contact this number belongs to
+     * @param number    number in any format, numbers without digits are ignored
+     */
+    public synchronized void add(int contactId, String number) {
+        String digits = normalize(number);
+        if (digits.isEmpty())
+            return;
+        List<String> numbers = mNumbersByContact.get(contactId);
+        if (numbers == null) {
+            numbers = new ArrayList<>(2);
+            mNumbersByContact.put(contactId, numbers);
+        } else if (numbers.contains(digits))
+            return;
+        numbers.add(digits);
+        addId(mExactMap, digits, contactId);
+        addId(mReversedMap, reverse(digits), contactId);
+    }
+
+    /**
+     * Replaces all indexed numbers of contact with numbers from its phone list
+     */
+    public synchronized void update(ContactData contact) {
+        remove(contact.getContactId());
+        for (PhoneNumber phoneNumber : contact.getPhoneList())
+            add(contact.getContactId(), phoneNumber.getMainData());
+    }
+
+    /**
+     * Removes all numbers of contact from index
+     */
+    public synchronized void remove(int contactId) {
+        List<String> numbers = mNumbersByContact.remove(contactId);
+        if (numbers == null)
+            return;
+        for (String digits : numbers) {
+            removeId(mExactMap, digits, contactId);
+            removeId(mReversedMap, reverse(digits), contactId);
+        }
+    }
+
+    /**
+     * <p>
+     * Applies changes of address book to index
+     * </p>
+     * <p>
+     * Note : delta should be built with {@link com.tomash.androidcontacts.contactgetter.main.FieldType#PHONE_NUMBERS} field
+     * </p>
+     */
+    public synchronized void apply(ContactsDelta<? extends ContactData> delta) {
+        for (Integer contactId : delta.getDeletedContactIds())
+            remove(contactId);
+        for (ContactData contact : delta.getChangedContacts())
+            update(contact);
+    }
+
+    /**
+     * Finds contacts with number that has exactly the same digits
+     *
+     * @param number number in any format
+     * @return ids of found contacts, empty list if there are none
+     */
+    public synchronized List<Integer> findExact(String number) {
+        List<Integer> ids = mExactMap.get(normalize(number));
+        return ids == null ? new ArrayList<Integer>() : new ArrayList<>(ids);
+    }
+
+    /**
+     * <p>
+     * Finds contacts with number that ends with digits of this number
+     * </p>
+     * <p>
+     * E.g. to identify incoming call regardless of country code search by its last 9 digits
+     * </p>
+     *
+     * @param suffix last digits of number in any format
+     * @return ids of found contacts without duplicates, empty list if there are none
+     */
+    public synchronized List<Integer> findBySuffix(String suffix) {
+        String reversed = reverse(normalize(suffix));
+        if (reversed.isEmpty())
+            return new ArrayList<>();
+        // all reversed numbers starting with reversed suffix are in range [reversed, reversed + ':'), ':' follows '9'
+        SortedMap<String, List<Integer>> matches = mReversedMap.subMap(reversed, reversed + ':');
+        // contact with several matching numbers is returned once, in order of its first match
+        LinkedHashSet<Integer> result = new LinkedHashSet<>();
+        for (List<Integer> ids : matches.values())
+            result.addAll(ids);
+        return new ArrayList<>(result);
+    }
+
+    public synchronized boolean isEmpty() {
+        return mNumbersByContact.isEmpty();
+    }
+
+    public synchronized void clear() {
+        mExactMap.clear();
+        mReversedMap.clear();
+        mNumbersByContact.clear();
+    }
+
+    /**
+     * '+' is dropped too, so numbers stored with and without it are found, see
+     * {@link com.tomash.androidcontacts.contactgetter.utils.FilterUtils#normalizeNumber(String)} for substring matching
+     *
+     * @return digits of number in the same order, all other characters are dropped
+     */
+    public static String normalize(String number) {
+        if (number == null)
+            return "";
+        StringBuilder digits = new StringBuilder(number.length());
+        for (int i = 0; i < number.length(); i++) {
+            char c = number.charAt(i);
+            if (c >= '0' && c <= '9')
+                digits.append(c);
+        }
+        return digits.toString();
+    }
+
+    private static String reverse(String digits) {
+        return new StringBuilder(digits).reverse().toString();
+    }
+
+    private static void addId(Map<String, List<Integer>> map, String key, int contactId) {
+        List<Integer> ids = map.get(key);
+        if (ids == null) {
+            ids = new ArrayList<>(1);
+            map.put(key, ids);
+        }
+        ids.add(contactId);
+    }
+
+    private static void removeId(Map<String, List<Integer>> map, String key, int contactId) {
+        List<Integer> ids = map.get(key);
+        if (ids == null)
+            return;
+        ids.remove(Integer.valueOf(contactId));
+        if (ids.isEmpty())
+            map.remove(key);
+    }
+}
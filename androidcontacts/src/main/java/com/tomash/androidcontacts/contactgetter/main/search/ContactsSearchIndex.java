@@ -0,0 +1,218 @@
+package com.tomash.androidcontacts.contactgetter.main.search;
+
+import com.tomash.androidcontacts.contactgetter.entity.ContactData;
+import com.tomash.androidcontacts.contactgetter.entity.Email;
+import com.tomash.androidcontacts.contactgetter.entity.NameData;
+import com.tomash.androidcontacts.contactgetter.main.contactsGetter.ContactsDelta;
+import com.tomash.androidcontacts.contactgetter.utils.IntObjectMap;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * <p>
+ * In-memory index for prefix search of contacts, e.g. for search as you type.
+ * </p>
+ * <p>
+ * Display name, name parts, nickname, emails, organization and note are split into words, every word points to contacts that contain it.
+ * Query words are matched as prefixes of contact words, contacts should match all query words,
+ * results are ranked by field where word was found and by exact word matches.
+ * </p>
+ * <p>
+ * Only loaded fields are indexed, index can be updated incrementally with changed contacts, all methods are thread safe.
+ * </p>
+ */
+public class ContactsSearchIndex {
+    public static final int DISPLAY_NAME_WEIGHT = 100;
+    public static final int NAME_WEIGHT = 80;
+    public static final int NICKNAME_WEIGHT = 60;
+    public static final int ORGANIZATION_WEIGHT = 30;
+    public static final int EMAIL_WEIGHT = 20;
+    public static final int NOTE_WEIGHT = 10;
+    private final TreeMap<String, IntObjectMap<Integer>> mPostings = new TreeMap<>();
+    private final IntObjectMap<List<String>> mWordsByContact = new IntObjectMap<>();
+
+    /**
+     * Creates index with all contacts from list
+     */
+    public static ContactsSearchIndex of(List<? extends ContactData> contacts) {
+        ContactsSearchIndex index = new ContactsSearchIndex();
+        for (ContactData contact : contacts)
+            index.update(contact);
+        return index;
+    }
+
+    /**
+     * Replaces all indexed words of contact with words from its current data
+     */
+    public synchronized void update(ContactData contact) {
+        int id = contact.getContactId();
+        remove(id);
+        Map<String, Integer> words = new HashMap<>();
+        addWords(words, contact.getCompositeName(), DISPLAY_NAME_WEIGHT);
+        NameData nameData = contact.getNameData();
+        addWords(words, nameData.getFirstName(), NAME_WEIGHT);
+        addWords(words, nameData.getMiddleName(), NAME_WEIGHT);
+        addWords(words, nameData.getSurname(), NAME_WEIGHT);
+        addWords(words, nameData.getPhoneticFirst(), NAME_WEIGHT);
+        addWords(words, nameData.getPhoneticMiddle(), NAME_WEIGHT);
+        addWords(words, nameData.getPhoneticLast(), NAME_WEIGHT);
+        addWords(words, contact.getNickName(), NICKNAME_WEIGHT);
+        addWords(words, contact.getOrganization().getName(), ORGANIZATION_WEIGHT);
+        addWords(words, contact.getOrganization().getTitle(), ORGANIZATION_WEIGHT);
+        for (Email email : contact.getEmailList())
+            addWords(words, email.getMainData(), EMAIL_WEIGHT);
+        addWords(words, contact.getNote(), NOTE_WEIGHT);
+        if (words.isEmpty())
+            return;
+        for (Map.Entry<String, Integer> word : words.entrySet()) {
+            IntObjectMap<Integer> posting = mPostings.get(word.getKey());
+            if (posting == null) {
+                posting = new IntObjectMap<>(4);
+                mPostings.put(word.getKey(), posting);
+            }
+            posting.put(id, word.getValue());
+        }
+        mWordsByContact.put(id, new ArrayList<>(words.keySet()));
+    }
+
+    /**
+     * Removes contact from index
+     */
+    public synchronized void remove(int contactId) {
+        List<String> words = mWordsByContact.remove(contactId);
+        if (words == null)
+            return;
+        for (String word : words) {
+            IntObjectMap<Integer> posting = mPostings.get(word);
+            if (posting == null)
+                continue;
+            posting.remove(contactId);
+            if (posting.isEmpty())
+                mPostings.remove(word);
+        }
+    }
+
+    /**
+     * <p>
+     * Applies changes of address book to index
+     * </p>
+     * <p>
+     * Note : delta should be built with the same fields as contacts this index was created from
+     * </p>
+     */
+    public synchronized void apply(ContactsDelta<? extends ContactData> delta) {
+        for (Integer contactId : delta.getDeletedContactIds())
+            remove(contactId);
+        for (ContactData contact : delta.getChangedContacts())
+            update(contact);
+    }
+
+    /**
+     * <p>
+     * Finds contacts that have words starting with every word of query
+     * </p>
+     * <p>
+     * E.g. "jo sm" finds "John Smith", contacts with matches in name go before matches in email or note
+     * </p>
+     *
+     * @param query words to search for in any case
+     * @param limit max number of returned ids
+     * @return ids of found contacts ordered by rank, empty list for blank query
+     */
+    public synchronized List<Integer> search(String query, int limit) {
+        List<String> queryWords = tokenize(query);
+        if (queryWords.isEmpty() || limit <= 0)
+            return new ArrayList<>();
+        IntObjectMap<Integer> scores = null;
+        for (String queryWord : queryWords) {
+            IntObjectMap<Integer> wordScores = scoreWord(queryWord);
+            if (scores != null) {
+                final IntObjectMap<Integer> previous = scores;
+                final IntObjectMap<Integer> merged = new IntObjectMap<>(Math.min(previous.size(), wordScores.size()));
+                wordScores.forEach((id, score) -> {
+                    Integer previousScore = previous.get(id);
+                    if (previousScore != null)
+                        merged.put(id, previousScore + score);
+                });
+                wordScores = merged;
+            }
+            scores = wordScores;
+            if (scores.isEmpty())
+                break;
+        }
+        final List<long[]> ranked = new ArrayList<>(scores.size());
+        scores.forEach((id, score) -> ranked.add(new long[]{score, id}));
+        Collections.sort(ranked, (first, second) -> first[0] != second[0]
+            ? (first[0] > second[0] ? -1 : 1)
+            : (first[1] < second[1] ? -1 : (first[1] == second[1] ? 0 : 1)));
+        List<Integer> result = new ArrayList<>(Math.min(limit, ranked.size()));
+        for (int i = 0; i < ranked.size() && i < limit; i++)
+            result.add((int) ranked.get(i)[1]);
+        return result;
+    }
+
+    public synchronized boolean isEmpty() {
+        return mWordsByContact.isEmpty();
+    }
+
+    public synchronized void clear() {
+        mPostings.clear();
+        mWordsByContact.clear();
+    }
+
+    /**
+     * Best score of every contact that has word starting with prefix, exact word match scores twice as much
+     */
+    private IntObjectMap<Integer> scoreWord(final String prefix) {
+        final IntObjectMap<Integer> scores = new IntObjectMap<>();
+        // all words starting with prefix are in range [prefix, prefix + max char)
+        SortedMap<String, IntObjectMap<Integer>> matches = mPostings.subMap(prefix, prefix + Character.MAX_VALUE);
+        for (Map.Entry<String, IntObjectMap<Integer>> match : matches.entrySet()) {
+            final int factor = match.getKey().length() == prefix.length() ? 2 : 1;
+            match.getValue().forEach((id, weight) -> {
+                Integer current = scores.get(id);
+                if (current == null || current < weight * factor)
+                    scores.put(id, weight * factor);
+            });
+        }
+        return scores;
+    }
+
+    /**
+     * Adds words of text with weight of field, word found in several fields keeps the highest weight
+     */
+    private static void addWords(Map<String, Integer> words, String text, int weight) {
+        for (String word : tokenize(text)) {
+            Integer current = words.get(word);
+            if (current == null || current < weight)
+                words.put(word, weight);
+        }
+    }
+
+    /**
+     * Splits text to lowercase words of letters and digits
+     */
+    private static List<String> tokenize(String text) {
+        List<String> words = new ArrayList<>();
+        if (text == null)
+            return words;
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean isWordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (isWordChar && start < 0)
+                start = i;
+            else if (!isWordChar && start >= 0) {
+                words.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return words;
+    }
+}
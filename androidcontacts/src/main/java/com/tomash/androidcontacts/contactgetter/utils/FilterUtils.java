@@ -1,5 +1,9 @@
 package com.tomash.androidcontacts.contactgetter.utils;
 
+import android.provider.ContactsContract.CommonDataKinds;
+import android.provider.ContactsContract.CommonDataKinds.Note;
+import android.provider.ContactsContract.CommonDataKinds.StructuredPostal;
+
 import com.tomash.androidcontacts.contactgetter.entity.Address;
 import com.tomash.androidcontacts.contactgetter.entity.ContactData;
 import com.tomash.androidcontacts.contactgetter.entity.Email;
@@ -7,20 +11,28 @@ import com.tomash.androidcontacts.contactgetter.entity.PhoneNumber;
 import com.tomash.androidcontacts.contactgetter.interfaces.BaseFilter;
 import com.tomash.androidcontacts.contactgetter.interfaces.FieldFilter;
 import com.tomash.androidcontacts.contactgetter.interfaces.ListFilter;
+import com.tomash.androidcontacts.contactgetter.interfaces.ProviderPredicate;
 
 import java.util.List;
 
 public class FilterUtils {
-    public static BaseFilter<PhoneNumber, String> withPhoneLikeFilter(final String number) {
+    private static final int LIKE_FIELD_FILTER_COST = BaseFilter.FIELD_FILTER_COST + 1;
+    private static final int LIKE_LIST_FILTER_COST = BaseFilter.LIST_FILTER_COST + 1;
+
+    /**
+     * Pattern is normalized once, numbers are compared by normalized forms cached in {@link PhoneNumber#getNormalizedNumber()}
+     */
+    public static BaseFilter<PhoneNumber, String> withPhoneLikeFilter(String number) {
+        final String normalizedNumber = normalizeNumber(number);
         return new ListFilter<PhoneNumber, String>() {
             @Override
             protected String getFilterPattern() {
-                return number;
+                return normalizedNumber;
             }
 
             @Override
             protected String getFilterData(PhoneNumber data) {
-                return data.getMainData();
+                return data.getNormalizedNumber();
             }
 
             @Override
@@ -30,11 +42,12 @@ public class FilterUtils {
 
             @Override
             protected boolean getFilterCondition(String data, String pattern) {
-                return formatNumber(data).contains(pattern);
+                return data.contains(pattern);
             }
 
-            private String formatNumber(String number) {
-                return number.replaceAll("[^0-9+]", "");
+            @Override
+            public int getFilterCost() {
+                return LIKE_LIST_FILTER_COST;
             }
         };
     }
@@ -84,6 +97,11 @@ public class FilterUtils {
             protected boolean getFilterCondition(String data, String pattern) {
                 return data.equalsIgnoreCase(pattern);
             }
+
+            @Override
+            public ProviderPredicate getProviderPredicate() {
+                return ProviderPredicate.ignoreCase(CommonDataKinds.Email.CONTENT_ITEM_TYPE, CommonDataKinds.Email.ADDRESS, ProviderPredicate.Operator.EQUALS_IGNORE_CASE, getFilterPattern());
+            }
         };
     }
 
@@ -106,7 +124,17 @@ public class FilterUtils {
 
             @Override
             protected boolean getFilterCondition(String data, String pattern) {
-                return data.toLowerCase().contains(pattern.toLowerCase());
+                return containsIgnoreCase(data, pattern);
+            }
+
+            @Override
+            public int getFilterCost() {
+                return LIKE_LIST_FILTER_COST;
+            }
+
+            @Override
+            public ProviderPredicate getProviderPredicate() {
+                return ProviderPredicate.ignoreCase(CommonDataKinds.Email.CONTENT_ITEM_TYPE, CommonDataKinds.Email.ADDRESS, ProviderPredicate.Operator.CONTAINS_IGNORE_CASE, getFilterPattern());
             }
         };
     }
@@ -130,7 +158,17 @@ public class FilterUtils {
 
             @Override
             protected boolean getFilterCondition(String data, String pattern) {
-                return data.toLowerCase().contains(pattern.toLowerCase());
+                return containsIgnoreCase(data, pattern);
+            }
+
+            @Override
+            public int getFilterCost() {
+                return LIKE_LIST_FILTER_COST;
+            }
+
+            @Override
+            public ProviderPredicate getProviderPredicate() {
+                return ProviderPredicate.ignoreCase(StructuredPostal.CONTENT_ITEM_TYPE, StructuredPostal.FORMATTED_ADDRESS, ProviderPredicate.Operator.CONTAINS_IGNORE_CASE, getFilterPattern());
             }
         };
     }
@@ -156,6 +194,11 @@ public class FilterUtils {
             protected boolean getFilterCondition(String data, String pattern) {
                 return data.equalsIgnoreCase(pattern);
             }
+
+            @Override
+            public ProviderPredicate getProviderPredicate() {
+                return ProviderPredicate.ignoreCase(StructuredPostal.CONTENT_ITEM_TYPE, StructuredPostal.FORMATTED_ADDRESS, ProviderPredicate.Operator.EQUALS_IGNORE_CASE, getFilterPattern());
+            }
         };
     }
 
@@ -173,7 +216,17 @@ public class FilterUtils {
 
             @Override
             protected boolean getFilterCondition(String data, String pattern) {
-                return data.toLowerCase().contains(pattern.toLowerCase());
+                return containsIgnoreCase(data, pattern);
+            }
+
+            @Override
+            public int getFilterCost() {
+                return LIKE_FIELD_FILTER_COST;
+            }
+
+            @Override
+            public ProviderPredicate getProviderPredicate() {
+                return ProviderPredicate.ignoreCase(Note.CONTENT_ITEM_TYPE, Note.NOTE, ProviderPredicate.Operator.CONTAINS_IGNORE_CASE, getFilterPattern());
             }
         };
     }
@@ -194,7 +247,55 @@ public class FilterUtils {
             protected boolean getFilterCondition(String data, String pattern) {
                 return data.equalsIgnoreCase(pattern);
             }
+
+            @Override
+            public ProviderPredicate getProviderPredicate() {
+                return ProviderPredicate.ignoreCase(Note.CONTENT_ITEM_TYPE, Note.NOTE, ProviderPredicate.Operator.EQUALS_IGNORE_CASE, getFilterPattern());
+            }
         };
     }
 
+    /**
+     * Case insensitive {@link String#contains(CharSequence)} that doesn't allocate lowercase copies of strings
+     */
+    public static boolean containsIgnoreCase(String data, String pattern) {
+        int length = pattern.length();
+        for (int i = 0, last = data.length() - length; i <= last; i++) {
+            if (data.regionMatches(true, i, pattern, 0, length))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * <p>
+     * Normalizes number for substring matching of {@link #withPhoneLikeFilter(String)}
+     * </p>
+     * <p>
+     * '+' is kept unlike in {@link com.tomash.androidcontacts.contactgetter.main.phoneIndex.PhoneIndex#normalize(String)}:
+     * query typed with '+' should match only numbers written with it, while index compares whole numbers and suffixes,
+     * where the same number can be stored with or without '+'
+     * </p>
+     *
+     * @return number with all characters except digits and '+' removed, empty string for null
+     */
+    public static String normalizeNumber(String number) {
+        if (number == null)
+            return "";
+        StringBuilder normalized = null;
+        for (int i = 0; i < number.length(); i++) {
+            char c = number.charAt(i);
+            if (isNumberChar(c)) {
+                if (normalized != null)
+                    normalized.append(c);
+            } else if (normalized == null) {
+                normalized = new StringBuilder(number.length()).append(number, 0, i);
+            }
+        }
+        return normalized == null ? number : normalized.toString();
+    }
+
+    private static boolean isNumberChar(char c) {
+        return (c >= '0' && c <= '9') || c == '+';
+    }
 }
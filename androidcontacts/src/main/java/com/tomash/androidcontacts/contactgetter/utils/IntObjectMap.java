@@ -0,0 +1,166 @@
+package com.tomash.androidcontacts.contactgetter.utils;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ * Map from primitive int keys to objects based on open addressing with linear probing.
+ * </p>
+ * <p>
+ * Unlike {@link android.util.SparseArray} insertion of keys in random order doesn't shift arrays,
+ * so building map from unordered rows takes linear time.
+ * </p>
+ * <p>
+ * Null values are not supported, {@link #get(int)} returns null for missing keys.
+ * </p>
+ *
+ * @param <V> type of values
+ */
+public class IntObjectMap<V> {
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.5f;
+    private int[] keys;
+    private Object[] values;
+    private int size;
+    private int mask;
+
+    public IntObjectMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param expectedSize number of entries map should hold without resizing
+     */
+    public IntObjectMap(int expectedSize) {
+        allocate(tableSizeFor(expectedSize));
+    }
+
+    public V get(int key) {
+        int index = indexOf(key);
+        return index < 0 ? null : (V) values[index];
+    }
+
+    public boolean containsKey(int key) {
+        return indexOf(key) >= 0;
+    }
+
+    /**
+     * @return previous value for this key or null if there was none
+     */
+    public V put(int key, V value) {
+        if (value == null)
+            throw new IllegalArgumentException("Null values are not supported");
+        int index = hash(key) & mask;
+        while (values[index] != null) {
+            if (keys[index] == key) {
+                V previous = (V) values[index];
+                values[index] = value;
+                return previous;
+            }
+            index = (index + 1) & mask;
+        }
+        keys[index] = key;
+        values[index] = value;
+        if (++size > values.length * LOAD_FACTOR)
+            resize(values.length * 2);
+        return null;
+    }
+
+    /**
+     * @return removed value or null if there was no value for this key
+     */
+    public V remove(int key) {
+        int index = indexOf(key);
+        if (index < 0)
+            return null;
+        V removed = (V) values[index];
+        values[index] = null;
+        size--;
+        // shift following entries of the probe chain back so lookups don't stop at the freed slot
+        int next = (index + 1) & mask;
+        while (values[next] != null) {
+            int ideal = hash(keys[next]) & mask;
+            if (((next - ideal) & mask) >= ((next - index) & mask)) {
+                keys[index] = keys[next];
+                values[index] = values[next];
+                values[next] = null;
+                index = next;
+            }
+            next = (next + 1) & mask;
+        }
+        return removed;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    /**
+     * Calls visitor for every entry of this map in unspecified order
+     */
+    public void forEach(EntryVisitor<V> visitor) {
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null)
+                visitor.visit(keys[i], (V) values[i]);
+        }
+    }
+
+    public interface EntryVisitor<V> {
+        void visit(int key, V value);
+    }
+
+    private int indexOf(int key) {
+        int index = hash(key) & mask;
+        while (values[index] != null) {
+            if (keys[index] == key)
+                return index;
+            index = (index + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void resize(int capacity) {
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] == null)
+                continue;
+            int index = hash(oldKeys[i]) & mask;
+            while (values[index] != null)
+                index = (index + 1) & mask;
+            keys[index] = oldKeys[i];
+            values[index] = oldValues[i];
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+    }
+
+    private static int tableSizeFor(int expectedSize) {
+        int capacity = DEFAULT_CAPACITY;
+        while (capacity * LOAD_FACTOR < expectedSize)
+            capacity <<= 1;
+        return capacity;
+    }
+
+    /**
+     * Contact ids are mostly sequential, so keys are mixed to avoid long probe chains
+     */
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,44 @@
+package com.tomash.androidcontacts.tests
+
+import com.tomash.androidcontacts.contactgetter.main.phoneIndex.PhoneIndex
+import org.junit.Assert
+import org.junit.Test
+
+class PhoneIndexTest {
+
+    @Test
+    fun findsExactNumberInAnyFormat() {
+        val index = PhoneIndex()
+        index.add(1, "+1 (555) 010-99")
+        index.add(2, "555 01")
+        Assert.assertEquals(listOf(1), index.findExact("1555 01099"))
+        Assert.assertEquals(listOf(2), index.findExact("55501"))
+        Assert.assertTrue(index.findExact("5550").isEmpty())
+    }
+
+    @Test
+    fun findsNumbersBySuffix() {
+        val index = PhoneIndex()
+        index.add(1, "+380 67 123 45 67")
+        index.add(2, "067 123 45 67")
+        index.add(2, "0671234567")
+        index.add(3, "067 123 45 68")
+        Assert.assertEquals(setOf(1, 2), index.findBySuffix("671234567").toSet())
+        Assert.assertEquals(2, index.findBySuffix("671234567").size)
+        Assert.assertEquals(listOf(3), index.findBySuffix("68"))
+        Assert.assertTrue(index.findBySuffix("").isEmpty())
+    }
+
+    @Test
+    fun removesAllNumbersOfContact() {
+        val index = PhoneIndex()
+        index.add(1, "12345")
+        index.add(1, "67890")
+        index.add(2, "12345")
+        index.remove(1)
+        Assert.assertEquals(listOf(2), index.findExact("12345"))
+        Assert.assertTrue(index.findBySuffix("890").isEmpty())
+        index.remove(2)
+        Assert.assertTrue(index.isEmpty)
+    }
+}
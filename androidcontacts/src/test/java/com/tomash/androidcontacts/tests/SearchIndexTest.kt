@@ -0,0 +1,61 @@
+package com.tomash.androidcontacts.tests
+
+import com.tomash.androidcontacts.contactgetter.entity.ContactData
+import com.tomash.androidcontacts.contactgetter.entity.Email
+import com.tomash.androidcontacts.contactgetter.main.search.ContactsSearchIndex
+import org.junit.Assert
+import org.junit.Test
+import java.util.Locale
+
+class SearchIndexTest {
+
+    private fun contact(id: Int, name: String, action: ContactData.() -> Unit = {}) = object : ContactData(id) {}.apply {
+        compositeName = name
+        action()
+    }
+
+    private val contacts = listOf(
+        contact(1, "John Smith"),
+        contact(2, "Kate Johnson") { note = "met john at work" },
+        contact(3, "Mark") { emailList.add(Email("jo.smith@mail.com", "work")) }
+    )
+
+    @Test
+    fun findsContactsByWordPrefixes() {
+        val index = ContactsSearchIndex.of(contacts)
+        Assert.assertEquals(listOf(1, 2, 3), index.search("jo", 10))
+        Assert.assertEquals(listOf(1, 3), index.search("jo sm", 10))
+        Assert.assertEquals(listOf(1), index.search("JO SM", 1))
+        Assert.assertTrue(index.search(" ", 10).isEmpty())
+    }
+
+    @Test
+    fun ranksExactWordsAndNamesFirst() {
+        val index = ContactsSearchIndex.of(contacts)
+        Assert.assertEquals(listOf(1, 2), index.search("john", 10))
+    }
+
+    @Test
+    fun updatesIncrementally() {
+        val index = ContactsSearchIndex.of(contacts)
+        index.remove(1)
+        Assert.assertEquals(listOf(2, 3), index.search("jo", 10))
+        index.update(contact(2, "Kate"))
+        Assert.assertTrue(index.search("john", 10).isEmpty())
+        index.update(contact(4, "Johanna"))
+        Assert.assertEquals(listOf(4), index.search("joh", 10))
+    }
+
+    @Test
+    fun matchesIndependentlyOfDefaultLocale() {
+        val defaultLocale = Locale.getDefault()
+        Locale.setDefault(Locale("tr", "TR"))
+        try {
+            val index = ContactsSearchIndex.of(listOf(contact(1, "IVAN")))
+            Assert.assertEquals(listOf(1), index.search("ivan", 10))
+            Assert.assertEquals(listOf(1), index.search("IVAN", 10))
+        } finally {
+            Locale.setDefault(defaultLocale)
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.tomash.androidcontacts.utils
+
+import com.tomash.androidcontacts.contactgetter.utils.FilterUtils
+import org.junit.Assert
+import org.junit.Test
+
+class FilterUtilsTest {
+
+    @Test
+    fun containsIgnoreCaseMatchesLowercaseContains() {
+        listOf("Hello World" to "o w", "Hello" to "HELLO", "abc" to "", "" to "a", "abc" to "abcd", "aab" to "ab").forEach { (data, pattern) ->
+            Assert.assertEquals(data.toLowerCase().contains(pattern.toLowerCase()), FilterUtils.containsIgnoreCase(data, pattern))
+        }
+    }
+
+    @Test
+    fun normalizeNumberKeepsDigitsAndPlus() {
+        listOf("+1 (123) 000-1234", "001234", "1-1-2", "", "(0)", "abc").forEach { number ->
+            Assert.assertEquals(number.replace(Regex("[^0-9+]"), ""), FilterUtils.normalizeNumber(number))
+        }
+        Assert.assertEquals("", FilterUtils.normalizeNumber(null))
+    }
+}
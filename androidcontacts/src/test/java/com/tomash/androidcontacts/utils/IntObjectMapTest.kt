@@ -0,0 +1,41 @@
+package com.tomash.androidcontacts.utils
+
+import com.tomash.androidcontacts.contactgetter.utils.IntObjectMap
+import org.junit.Assert
+import org.junit.Test
+import java.util.Random
+
+class IntObjectMapTest {
+
+    @Test
+    fun behavesLikeHashMap() {
+        val random = Random(42)
+        val map = IntObjectMap<Int>()
+        val expected = HashMap<Int, Int>()
+        repeat(100_000) {
+            val key = random.nextInt(2_000)
+            if (random.nextInt(3) == 0) {
+                Assert.assertEquals(expected.remove(key), map.remove(key))
+            } else {
+                val value = random.nextInt()
+                Assert.assertEquals(expected.put(key, value), map.put(key, value))
+            }
+            Assert.assertEquals(expected.size, map.size())
+        }
+        (0 until 2_000).forEach { Assert.assertEquals(expected[it], map.get(it)) }
+    }
+
+    @Test
+    fun visitsAllEntries() {
+        val map = IntObjectMap<String>(4)
+        (1..100).forEach { map.put(it, it.toString()) }
+        val visited = HashMap<Int, String>()
+        map.forEach { key, value -> visited[key] = value }
+        Assert.assertEquals((1..100).associateWith { it.toString() }, visited)
+    }
+
+    @Test(expected = IllegalArgumentException::class)
+    fun rejectsNullValues() {
+        IntObjectMap<String>().put(1, null)
+    }
+}